@@ -1,10 +1,18 @@
 package com.classechobackend.config;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
 @Configuration
 public class SupabaseConfig {
 
@@ -14,9 +22,57 @@ public class SupabaseConfig {
     @Value("${supabase.service-role-key}")
     private String serviceRoleKey;
 
+    @Value("${supabase.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${supabase.http.pending-acquire-max-count:200}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${supabase.http.pending-acquire-timeout-ms:2000}")
+    private long pendingAcquireTimeoutMs;
+
+    @Value("${supabase.http.max-idle-time-ms:30000}")
+    private long maxIdleTimeMs;
+
+    @Value("${supabase.http.max-life-time-ms:300000}")
+    private long maxLifeTimeMs;
+
+    @Value("${supabase.http.connect-timeout-ms:3000}")
+    private int connectTimeoutMs;
+
+    @Value("${supabase.http.response-timeout-ms:5000}")
+    private long responseTimeoutMs;
+
+    // Bounded pool shared by every Supabase call.
+    // Callers beyond max-connections wait in a bounded queue and fail fast once it is full or the wait times out.
+    // metrics(true) publishes reactor.netty.connection.provider.* (active, idle, pending connections, acquire time).
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider supabaseConnectionProvider() {
+        return ConnectionProvider.builder("supabase")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMs))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMs))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+    }
+
     @Bean
-    public WebClient supabaseWebClient() {
+    public WebClient supabaseWebClient(ConnectionProvider supabaseConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(supabaseConnectionProvider)
+                // HTTP/2 negotiated over TLS (ALPN), HTTP/1.1 otherwise
+                .protocol(HttpProtocol.H2, HttpProtocol.HTTP11)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMs)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                // Longest wait between reads once the request is sent; the deadline for the whole
+                // exchange is set per call in SupabaseResilience (supabase.resilience.call-timeout-ms)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMs))
+                .metrics(true, uri -> uri.replaceAll("\\?.*$", ""));
+
         return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .baseUrl(supabaseUrl)
                 .defaultHeader("apikey", serviceRoleKey)
                 .defaultHeader("Authorization", "Bearer " + serviceRoleKey)
@@ -3,29 +3,37 @@ package com.classechobackend.controller;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.classechobackend.dto.AttendanceDTO;
+import com.classechobackend.dto.AttendanceReceipt;
+import com.classechobackend.dto.BulkAttendanceRequest;
+import com.classechobackend.dto.BulkAttendanceResult;
+import com.classechobackend.dto.PageResponse;
+import com.classechobackend.dto.QrTokenResponse;
+import com.classechobackend.dto.SessionRosterResponse;
 import com.classechobackend.model.Attendance;
 import com.classechobackend.model.AttendanceSession;
-import com.classechobackend.model.Student;
-import com.classechobackend.model.Teacher;
-import com.classechobackend.repository.StudentRepository;
-import com.classechobackend.repository.TeacherRepository;
+import com.classechobackend.service.AttendanceExportService;
 import com.classechobackend.service.AttendanceService;
+import com.classechobackend.service.IdentityResolver;
 
 @RestController
 @RequestMapping("/api/attendance")
@@ -34,12 +42,12 @@ public class AttendanceController {
 
     @Autowired
     private AttendanceService attendanceService;
-    
+
     @Autowired
-    private StudentRepository studentRepository;
+    private AttendanceExportService attendanceExportService;
     
     @Autowired
-    private TeacherRepository teacherRepository;
+    private IdentityResolver identityResolver;
 
     // Generate QR code for attendance
     @PostMapping("/qr/generate")
@@ -56,17 +64,13 @@ public class AttendanceController {
             System.out.println("Section: " + section);
             System.out.println("Date: " + date);
             
-            // Convert user ID to teacher ID (the teacherId parameter might be a user ID)
-            Teacher teacher = teacherRepository.findByUserId(teacherId)
-                .orElseGet(() -> {
-                    // If not found by user ID, try to find by teacher ID directly
-                    return teacherRepository.findById(teacherId)
-                        .orElseThrow(() -> new RuntimeException("Teacher not found for ID: " + teacherId));
-                });
+            // The teacherId parameter might be a user ID or a teacher ID, one cached lookup covers both
+            UUID resolvedTeacherId = identityResolver.resolveTeacherId(teacherId)
+                .orElseThrow(() -> new RuntimeException("Teacher not found for ID: " + teacherId));
             
-            System.out.println("Found Teacher ID: " + teacher.getId());
+            System.out.println("Found Teacher ID: " + resolvedTeacherId);
             
-            AttendanceSession session = attendanceService.generateQRCode(courseId, teacher.getId(), section, date);
+            AttendanceSession session = attendanceService.generateQRCode(courseId, resolvedTeacherId, section, date);
             
             System.out.println("QR Code generated successfully: " + session.getQrCode());
             return ResponseEntity.status(HttpStatus.CREATED).body(session);
@@ -77,6 +81,23 @@ public class AttendanceController {
         }
     }
 
+    // Get the current rotating QR token of a session (the display re-fetches it at refreshAt); session's teacher only
+    @GetMapping("/qr/token/{sessionId}")
+    public ResponseEntity<QrTokenResponse> getCurrentQrToken(
+        @PathVariable UUID sessionId,
+        @RequestAttribute(value = "teacherId", required = false) UUID teacherId
+    ) {
+        try {
+            return ResponseEntity.ok(attendanceService.getCurrentQrToken(sessionId, teacherId));
+        } catch (AccessDeniedException e) {
+            System.err.println("Refused QR token for session " + sessionId + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(null);
+        } catch (Exception e) {
+            System.err.println("ERROR issuing QR token: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+    }
+
     // Validate QR code
     @GetMapping("/qr/validate/{qrCode}")
     public ResponseEntity<Boolean> validateQRCode(@PathVariable String qrCode) {
@@ -84,9 +105,9 @@ public class AttendanceController {
         return ResponseEntity.ok(isValid);
     }
 
-    // Mark attendance via QR code
+    // Mark attendance via QR code (accepted asynchronously, returns a provisional receipt)
     @PostMapping("/qr/mark")
-    public ResponseEntity<Attendance> markAttendanceViaQR(
+    public ResponseEntity<AttendanceReceipt> markAttendanceViaQR(
         @RequestParam UUID studentId,
         @RequestParam String qrCode
     ) {
@@ -95,19 +116,15 @@ public class AttendanceController {
             System.out.println("User/Student ID received: " + studentId);
             System.out.println("QR Code: " + qrCode);
             
-            // Convert user ID to student ID (the studentId parameter might be a user ID)
-            Student student = studentRepository.findByUserId(studentId)
-                .orElseGet(() -> {
-                    // If not found by user ID, try to find by student ID directly
-                    return studentRepository.findById(studentId)
-                        .orElseThrow(() -> new RuntimeException("Student not found for ID: " + studentId));
-                });
+            // The studentId parameter might be a user ID or a student ID, one cached lookup covers both
+            UUID resolvedStudentId = identityResolver.resolveStudentId(studentId)
+                .orElseThrow(() -> new RuntimeException("Student not found for ID: " + studentId));
             
-            System.out.println("Found Student ID: " + student.getId());
+            System.out.println("Found Student ID: " + resolvedStudentId);
             
-            Attendance attendance = attendanceService.markAttendanceViaQR(student.getId(), qrCode);
-            System.out.println("Attendance marked successfully");
-            return ResponseEntity.status(HttpStatus.CREATED).body(attendance);
+            AttendanceReceipt receipt = attendanceService.markAttendanceViaQR(resolvedStudentId, qrCode);
+            System.out.println("Attendance accepted with receipt: " + receipt.getReceiptId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(receipt);
         } catch (Exception e) {
             System.err.println("ERROR marking attendance via QR: " + e.getMessage());
             e.printStackTrace();
@@ -132,17 +149,13 @@ public class AttendanceController {
             System.out.println("Section: " + section);
             System.out.println("Status: " + status);
             
-            // Convert user ID to student ID if needed (the studentId parameter might be a user ID)
-            Student student = studentRepository.findByUserId(studentId)
-                .orElseGet(() -> {
-                    // If not found by user ID, try to find by student ID directly
-                    return studentRepository.findById(studentId)
-                        .orElseThrow(() -> new RuntimeException("Student not found for ID: " + studentId));
-                });
+            // The studentId parameter might be a user ID or a student ID, one cached lookup covers both
+            UUID resolvedStudentId = identityResolver.resolveStudentId(studentId)
+                .orElseThrow(() -> new RuntimeException("Student not found for ID: " + studentId));
             
-            System.out.println("Found Student ID: " + student.getId());
+            System.out.println("Found Student ID: " + resolvedStudentId);
             
-            Attendance attendance = attendanceService.markAttendanceManually(student.getId(), courseId, date, section, status);
+            Attendance attendance = attendanceService.markAttendanceManually(resolvedStudentId, courseId, date, section, status);
             System.out.println("Manual attendance marked successfully");
             return ResponseEntity.status(HttpStatus.CREATED).body(attendance);
         } catch (Exception e) {
@@ -152,10 +165,37 @@ public class AttendanceController {
         }
     }
 
+    // Mark attendance for a whole section at once
+    @PostMapping("/mark/bulk")
+    public ResponseEntity<BulkAttendanceResult> markAttendanceBulk(@RequestBody BulkAttendanceRequest request) {
+        try {
+            System.out.println("=== AttendanceController.markAttendanceBulk ===");
+            System.out.println("Course ID: " + request.getCourseId() + ", Date: " + request.getDate()
+                + ", Section: " + request.getSection() + ", Students: " + request.getStatuses().size());
+
+            BulkAttendanceResult result = attendanceService.markAttendanceBulk(
+                request.getCourseId(), request.getDate(), request.getSection(), request.getStatuses());
+
+            System.out.println("Bulk attendance marked, changed rows: " + result.getChanged());
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            System.err.println("ERROR marking bulk attendance: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+    }
+
     // Get student's own attendance (from JWT token)
     // MUST come before /student/{studentId} to avoid path variable conflict
     @GetMapping("/student/me")
-    public ResponseEntity<List<Attendance>> getMyAttendance(@RequestAttribute("userId") UUID studentId) {
+    public ResponseEntity<List<Attendance>> getMyAttendance(
+        @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "studentId", required = false) UUID studentId
+    ) {
+        // Student ID resolved by the JWT filter
+        if (studentId == null) {
+            throw new RuntimeException("Student not found for user ID: " + userId);
+        }
         List<Attendance> attendance = attendanceService.getStudentAttendance(studentId);
         return ResponseEntity.ok(attendance);
     }
@@ -167,6 +207,16 @@ public class AttendanceController {
         return ResponseEntity.ok(attendance);
     }
 
+    // Get student's attendance records one keyset page at a time
+    @GetMapping("/student/{studentId}/page")
+    public ResponseEntity<PageResponse<Attendance>> getStudentAttendancePage(
+        @PathVariable UUID studentId,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit
+    ) {
+        return ResponseEntity.ok(attendanceService.getStudentAttendancePage(studentId, cursor, limit));
+    }
+
     // Get student's attendance for a specific course
     @GetMapping("/student/{studentId}/course/{courseId}")
     public ResponseEntity<List<Attendance>> getStudentCourseAttendance(
@@ -187,13 +237,9 @@ public class AttendanceController {
         System.out.println("=== AttendanceController.getCourseAttendanceByDate ===");
         System.out.println("Course ID: " + courseId + ", Date: " + date + ", Section: " + section);
         
-        List<Attendance> attendance = attendanceService.getCourseAttendanceByDate(courseId, date, section);
-        System.out.println("Found " + attendance.size() + " attendance records");
-        
-        // Convert to DTOs to include student information
-        List<AttendanceDTO> attendanceDTOs = attendance.stream()
-            .map(AttendanceDTO::fromEntity)
-            .collect(Collectors.toList());
+        // Selected straight into DTOs with student information
+        List<AttendanceDTO> attendanceDTOs = attendanceService.getCourseAttendanceDtosByDate(courseId, date, section);
+        System.out.println("Found " + attendanceDTOs.size() + " attendance records");
         
         // Log student IDs for debugging
         attendanceDTOs.forEach(dto -> {
@@ -208,17 +254,45 @@ public class AttendanceController {
         return ResponseEntity.ok(attendanceDTOs);
     }
 
+    // Export a course's attendance register (students x dates) as CSV or NDJSON, streamed row by row
+    @GetMapping("/course/{courseId}/export")
+    public ResponseEntity<StreamingResponseBody> exportCourseRegister(
+        @PathVariable UUID courseId,
+        @RequestParam(defaultValue = "csv") String format
+    ) {
+        AttendanceExportService.Format exportFormat;
+        try {
+            exportFormat = AttendanceExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(null);
+        }
+
+        MediaType contentType = exportFormat == AttendanceExportService.Format.CSV
+            ? new MediaType("text", "csv")
+            : MediaType.APPLICATION_NDJSON;
+        String fileName = "attendance-" + courseId + "." + exportFormat.name().toLowerCase();
+
+        StreamingResponseBody body = out -> attendanceExportService.exportRegister(courseId, exportFormat, out);
+        return ResponseEntity.ok()
+            .contentType(contentType)
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+            .body(body);
+    }
+
     // Get student's own attendance statistics (from JWT token)
     // MUST come before /student/{studentId}/stats to avoid path variable conflict
     @GetMapping("/student/me/stats")
-    public ResponseEntity<AttendanceService.AttendanceStatistics> getMyAttendanceStats(@RequestAttribute("userId") UUID userId) {
+    public ResponseEntity<AttendanceService.AttendanceStatistics> getMyAttendanceStats(
+        @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "studentId", required = false) UUID studentId
+    ) {
         System.out.println("=== AttendanceController.getMyAttendanceStats ===");
         System.out.println("User ID from JWT: " + userId);
         
-        // Convert user ID to student ID
-        Student student = studentRepository.findByUserId(userId)
-            .orElseThrow(() -> new RuntimeException("Student not found for user ID: " + userId));
-        UUID studentId = student.getId();
+        // Student ID resolved by the JWT filter
+        if (studentId == null) {
+            throw new RuntimeException("Student not found for user ID: " + userId);
+        }
         System.out.println("Found Student ID: " + studentId);
         
         AttendanceService.AttendanceStatistics stats = attendanceService.getStudentAttendanceStats(studentId);
@@ -231,14 +305,17 @@ public class AttendanceController {
 
     // Get student's own course-wise attendance statistics (from JWT token)
     @GetMapping("/student/me/courses")
-    public ResponseEntity<List<AttendanceService.CourseAttendanceStatistics>> getMyCourseWiseAttendance(@RequestAttribute("userId") UUID userId) {
+    public ResponseEntity<List<AttendanceService.CourseAttendanceStatistics>> getMyCourseWiseAttendance(
+        @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "studentId", required = false) UUID studentId
+    ) {
         System.out.println("=== AttendanceController.getMyCourseWiseAttendance ===");
         System.out.println("User ID from JWT: " + userId);
         
-        // Convert user ID to student ID
-        Student student = studentRepository.findByUserId(userId)
-            .orElseThrow(() -> new RuntimeException("Student not found for user ID: " + userId));
-        UUID studentId = student.getId();
+        // Student ID resolved by the JWT filter
+        if (studentId == null) {
+            throw new RuntimeException("Student not found for user ID: " + userId);
+        }
         System.out.println("Found Student ID: " + studentId);
         
         List<AttendanceService.CourseAttendanceStatistics> courseStats = attendanceService.getStudentCourseWiseAttendance(studentId);
@@ -283,16 +360,20 @@ public class AttendanceController {
 
     // Get teacher's own active sessions (from JWT token)
     @GetMapping("/teacher/me/sessions")
-    public ResponseEntity<List<AttendanceSession>> getMyActiveSessions(@RequestAttribute("userId") UUID userId) {
+    public ResponseEntity<List<AttendanceSession>> getMyActiveSessions(
+        @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "teacherId", required = false) UUID teacherId
+    ) {
         System.out.println("Getting attendance sessions for user ID: " + userId);
         
-        // Get teacher by user ID
-        Teacher teacher = teacherRepository.findByUserId(userId)
-            .orElseThrow(() -> new RuntimeException("Teacher not found for user ID: " + userId));
+        // Teacher ID resolved by the JWT filter
+        if (teacherId == null) {
+            throw new RuntimeException("Teacher not found for user ID: " + userId);
+        }
         
-        System.out.println("Found teacher ID: " + teacher.getId());
+        System.out.println("Found teacher ID: " + teacherId);
         
-        List<AttendanceSession> sessions = attendanceService.getTeacherActiveSessions(teacher.getId());
+        List<AttendanceSession> sessions = attendanceService.getTeacherActiveSessions(teacherId);
         System.out.println("Found " + sessions.size() + " active sessions");
         
         return ResponseEntity.ok(sessions);
@@ -319,6 +400,17 @@ public class AttendanceController {
         }
     }
 
+    // Live present count and absentees of an active session (served from the in-memory roster)
+    @GetMapping("/session/{sessionId}/roster")
+    public ResponseEntity<SessionRosterResponse> getLiveSessionRoster(@PathVariable UUID sessionId) {
+        try {
+            return ResponseEntity.ok(attendanceService.getLiveSessionRoster(sessionId));
+        } catch (Exception e) {
+            System.err.println("ERROR loading session roster: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+    }
+
     // Close/Invalidate an attendance session
     @PostMapping("/session/{sessionId}/close")
     public ResponseEntity<Void> closeAttendanceSession(@PathVariable UUID sessionId) {
@@ -18,6 +18,7 @@ import org.springframework.web.bind.annotation.RestController;
 import com.classechobackend.dto.ApiResponse;
 import com.classechobackend.dto.AuthRequest;
 import com.classechobackend.dto.AuthResponse;
+import com.classechobackend.dto.RefreshTokenRequest;
 import com.classechobackend.model.User;
 import com.classechobackend.repository.UserRepository;
 import com.classechobackend.service.AuthenticationService;
@@ -41,6 +42,19 @@ public class AuthController {
                         ApiResponse.success("Authentication successful", authResponse)));
     }
 
+    @PostMapping("/refresh")
+    public Mono<ResponseEntity<ApiResponse<AuthResponse>>> refresh(@RequestBody RefreshTokenRequest request) {
+        return authenticationService.refreshAccessToken(request.getRefreshToken())
+                .map(authResponse -> ResponseEntity.ok(
+                        ApiResponse.success("Token refreshed", authResponse)));
+    }
+
+    @PostMapping("/logout")
+    public ResponseEntity<ApiResponse<String>> logout(@RequestBody RefreshTokenRequest request) {
+        authenticationService.logout(request.getRefreshToken());
+        return ResponseEntity.ok(ApiResponse.success("Logged out"));
+    }
+
     @GetMapping("/validate")
     public ResponseEntity<ApiResponse<String>> validate(@RequestHeader("Authorization") String authHeader) {
         String token = authHeader.substring(7);
@@ -19,12 +19,9 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.classechobackend.dto.CourseEnrollmentDTO;
+import com.classechobackend.dto.PageResponse;
 import com.classechobackend.model.Course;
 import com.classechobackend.model.CourseEnrollment;
-import com.classechobackend.model.Student;
-import com.classechobackend.model.Teacher;
-import com.classechobackend.repository.StudentRepository;
-import com.classechobackend.repository.TeacherRepository;
 import com.classechobackend.service.CourseService;
 
 @RestController
@@ -34,12 +31,6 @@ public class CourseController {
 
     @Autowired
     private CourseService courseService;
-    
-    @Autowired
-    private StudentRepository studentRepository;
-    
-    @Autowired
-    private TeacherRepository teacherRepository;
 
     // Create a new course
     @PostMapping
@@ -84,17 +75,21 @@ public class CourseController {
 
     // Get teacher's own courses (from JWT token)
     @GetMapping("/teacher/me")
-    public ResponseEntity<List<Course>> getMyTeacherCourses(@RequestAttribute("userId") UUID userId) {
+    public ResponseEntity<List<Course>> getMyTeacherCourses(
+        @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "teacherId", required = false) UUID teacherId
+    ) {
         System.out.println("Getting courses for user ID: " + userId);
         
-        // Get teacher by user ID
-        Teacher teacher = teacherRepository.findByUserId(userId)
-            .orElseThrow(() -> new RuntimeException("Teacher not found for user ID: " + userId));
+        // Teacher ID resolved by the JWT filter
+        if (teacherId == null) {
+            throw new RuntimeException("Teacher not found for user ID: " + userId);
+        }
         
-        System.out.println("Found teacher ID: " + teacher.getId());
+        System.out.println("Found teacher ID: " + teacherId);
         
         // Get courses by teacher ID
-        List<Course> courses = courseService.getCoursesByTeacherId(teacher.getId());
+        List<Course> courses = courseService.getCoursesByTeacherId(teacherId);
         System.out.println("Found " + courses.size() + " courses for teacher");
         
         return ResponseEntity.ok(courses);
@@ -147,27 +142,25 @@ public class CourseController {
     // Get student's own courses (from JWT token)
     // MUST come before /student/{studentId} to avoid path variable conflict
     @GetMapping("/student/me")
-    public ResponseEntity<List<CourseEnrollmentDTO>> getMyStudentCourses(@RequestAttribute("userId") UUID userId) {
+    public ResponseEntity<List<CourseEnrollmentDTO>> getMyStudentCourses(
+        @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "studentId", required = false) UUID studentId
+    ) {
         System.out.println("=== CourseController.getMyStudentCourses ===");
         System.out.println("User ID from JWT: " + userId);
         
-        // Convert user ID to student ID
-        Student student = studentRepository.findByUserId(userId)
-            .orElseThrow(() -> new RuntimeException("Student not found for user ID: " + userId));
-        UUID studentId = student.getId();
+        // Student ID resolved by the JWT filter
+        if (studentId == null) {
+            throw new RuntimeException("Student not found for user ID: " + userId);
+        }
         System.out.println("Found Student ID: " + studentId);
         
-        List<CourseEnrollment> enrollments = courseService.getStudentEnrollments(studentId);
-        System.out.println("Found " + enrollments.size() + " course enrollments");
-        
-        // Convert to DTOs
-        List<CourseEnrollmentDTO> dtos = enrollments.stream()
-            .map(enrollment -> {
-                System.out.println("  - Course: " + enrollment.getCourse().getName() + " (ID: " + enrollment.getCourse().getId() + ")");
-                System.out.println("    Section: " + enrollment.getSection());
-                return CourseEnrollmentDTO.fromEntity(enrollment);
-            })
-            .collect(java.util.stream.Collectors.toList());
+        List<CourseEnrollmentDTO> dtos = courseService.getStudentEnrollmentDtos(studentId);
+        System.out.println("Found " + dtos.size() + " course enrollments");
+        dtos.forEach(enrollment -> {
+            System.out.println("  - Course: " + enrollment.getCourse().getName() + " (ID: " + enrollment.getCourse().getId() + ")");
+            System.out.println("    Section: " + enrollment.getSection());
+        });
         
         return ResponseEntity.ok(dtos);
     }
@@ -193,6 +186,17 @@ public class CourseController {
         return ResponseEntity.ok(dtos);
     }
 
+    // Get course enrollments one keyset page at a time
+    @GetMapping("/{courseId}/enrollments/page")
+    public ResponseEntity<PageResponse<CourseEnrollmentDTO>> getCourseEnrollmentsPage(
+        @PathVariable UUID courseId,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit
+    ) {
+        PageResponse<CourseEnrollment> page = courseService.getCourseEnrollmentsPage(courseId, cursor, limit);
+        return ResponseEntity.ok(page.map(CourseEnrollmentDTO::fromEntity));
+    }
+
     // Get enrollments by section
     @GetMapping("/{courseId}/enrollments/section/{section}")
     public ResponseEntity<List<CourseEnrollmentDTO>> getEnrollmentsBySection(
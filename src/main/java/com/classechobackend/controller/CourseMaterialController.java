@@ -1,6 +1,7 @@
 package com.classechobackend.controller;
 
 import com.classechobackend.dto.CourseMaterialDTO;
+import com.classechobackend.dto.PageResponse;
 import com.classechobackend.model.CourseMaterial;
 import com.classechobackend.service.CourseMaterialService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -115,4 +116,13 @@ public class CourseMaterialController {
         List<CourseMaterial> materials = materialService.getAllMaterials();
         return ResponseEntity.ok(materials);
     }
+
+    // Get all materials one keyset page at a time
+    @GetMapping("/page")
+    public ResponseEntity<PageResponse<CourseMaterial>> getMaterialsPage(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit
+    ) {
+        return ResponseEntity.ok(materialService.getMaterialsPage(cursor, limit));
+    }
 }
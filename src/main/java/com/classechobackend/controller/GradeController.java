@@ -19,9 +19,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.classechobackend.dto.GradeDTO;
+import com.classechobackend.dto.PageResponse;
 import com.classechobackend.model.Grade;
-import com.classechobackend.model.Student;
-import com.classechobackend.repository.StudentRepository;
 import com.classechobackend.service.GradeService;
 
 @RestController
@@ -31,9 +30,6 @@ public class GradeController {
 
     @Autowired
     private GradeService gradeService;
-    
-    @Autowired
-    private StudentRepository studentRepository;
 
     // Submit or update a grade
     @PostMapping("/submit")
@@ -68,27 +64,25 @@ public class GradeController {
     // Get student's own grades (from JWT token)
     // MUST come before /student/{studentId} to avoid path variable conflict
     @GetMapping("/student/me")
-    public ResponseEntity<List<GradeDTO>> getMyGrades(@RequestAttribute("userId") UUID userId) {
+    public ResponseEntity<List<GradeDTO>> getMyGrades(
+        @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "studentId", required = false) UUID studentId
+    ) {
         System.out.println("=== GradeController.getMyGrades ===");
         System.out.println("User ID from JWT: " + userId);
         
-        // Convert user ID to student ID
-        Student student = studentRepository.findByUserId(userId)
-            .orElseThrow(() -> new RuntimeException("Student not found for user ID: " + userId));
-        UUID studentId = student.getId();
+        // Student ID resolved by the JWT filter
+        if (studentId == null) {
+            throw new RuntimeException("Student not found for user ID: " + userId);
+        }
         System.out.println("Found Student ID: " + studentId);
         
-        List<Grade> grades = gradeService.getStudentGrades(studentId);
-        System.out.println("Found " + grades.size() + " grades");
-        
-        List<GradeDTO> gradeDTOs = grades.stream()
-            .map(grade -> {
-                System.out.println("  - Assessment: " + grade.getAssessmentName() + " (" + grade.getAssessmentType() + ")");
-                System.out.println("    Course: " + grade.getCourse().getName());
-                System.out.println("    Score: " + grade.getScore() + "/" + grade.getMaxScore() + " = " + grade.getLetterGrade());
-                return GradeDTO.fromGrade(grade);
-            })
-            .collect(Collectors.toList());
+        List<GradeDTO> gradeDTOs = gradeService.getStudentGradeDtos(studentId);
+        gradeDTOs.forEach(grade -> {
+            System.out.println("  - Assessment: " + grade.getAssessment().getTitle() + " (" + grade.getAssessment().getType() + ")");
+            System.out.println("    Course: " + grade.getCourse().getName());
+            System.out.println("    Score: " + grade.getScore() + "/" + grade.getAssessment().getMaxScore() + " = " + grade.getGrade());
+        });
         
         System.out.println("Returning " + gradeDTOs.size() + " grade DTOs");
         return ResponseEntity.ok(gradeDTOs);
@@ -99,12 +93,13 @@ public class GradeController {
     @GetMapping("/student/me/course/{courseId}")
     public ResponseEntity<List<GradeDTO>> getMyCourseGrades(
         @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "studentId", required = false) UUID studentId,
         @PathVariable UUID courseId
     ) {
-        // Convert user ID to student ID
-        Student student = studentRepository.findByUserId(userId)
-            .orElseThrow(() -> new RuntimeException("Student not found for user ID: " + userId));
-        UUID studentId = student.getId();
+        // Student ID resolved by the JWT filter
+        if (studentId == null) {
+            throw new RuntimeException("Student not found for user ID: " + userId);
+        }
         
         List<Grade> grades = gradeService.getStudentCourseGrades(studentId, courseId);
         List<GradeDTO> gradeDTOs = grades.stream()
@@ -137,6 +132,16 @@ public class GradeController {
         return ResponseEntity.ok(grades);
     }
 
+    // Get grades for a course one keyset page at a time
+    @GetMapping("/course/{courseId}/page")
+    public ResponseEntity<PageResponse<Grade>> getCourseGradesPage(
+        @PathVariable UUID courseId,
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit
+    ) {
+        return ResponseEntity.ok(gradeService.getCourseGradesPage(courseId, cursor, limit));
+    }
+
     // Get grades by assessment type
     @GetMapping("/student/{studentId}/course/{courseId}/type/{assessmentType}")
     public ResponseEntity<List<Grade>> getGradesByAssessmentType(
@@ -182,14 +187,17 @@ public class GradeController {
     // Get student's own GPA (from JWT token)
     // MUST come before /student/{studentId}/gpa to avoid path variable conflict
     @GetMapping("/student/me/gpa")
-    public ResponseEntity<Double> getMyGPA(@RequestAttribute("userId") UUID userId) {
+    public ResponseEntity<Double> getMyGPA(
+        @RequestAttribute("userId") UUID userId,
+        @RequestAttribute(value = "studentId", required = false) UUID studentId
+    ) {
         System.out.println("=== GradeController.getMyGPA ===");
         System.out.println("User ID from JWT: " + userId);
         
-        // Convert user ID to student ID
-        Student student = studentRepository.findByUserId(userId)
-            .orElseThrow(() -> new RuntimeException("Student not found for user ID: " + userId));
-        UUID studentId = student.getId();
+        // Student ID resolved by the JWT filter
+        if (studentId == null) {
+            throw new RuntimeException("Student not found for user ID: " + userId);
+        }
         System.out.println("Found Student ID: " + studentId);
         
         Double gpa = gradeService.calculateGPA(studentId);
@@ -214,6 +222,13 @@ public class GradeController {
         return ResponseEntity.ok(breakdown);
     }
 
+    // Get performance breakdown by assessment type for every student in a course (teacher dashboard)
+    @GetMapping("/course/{courseId}/breakdown")
+    public ResponseEntity<List<GradeService.StudentPerformanceBreakdown>> getCoursePerformanceBreakdown(@PathVariable UUID courseId) {
+        List<GradeService.StudentPerformanceBreakdown> breakdown = gradeService.getCoursePerformanceBreakdown(courseId);
+        return ResponseEntity.ok(breakdown);
+    }
+
     // Delete a grade
     @DeleteMapping("/{gradeId}")
     public ResponseEntity<Void> deleteGrade(@PathVariable UUID gradeId) {
@@ -43,6 +43,22 @@ public class AttendanceDTO {
         private String name;
     }
     
+    // Flat constructor for JPQL constructor expressions (AttendanceRepository projections)
+    public AttendanceDTO(UUID id, UUID studentId, String studentName, String rollNo, String email,
+                         UUID courseId, String courseCode, String courseName,
+                         LocalDate date, String section, Attendance.AttendanceStatus status,
+                         Attendance.AttendanceMethod markedBy, String qrCode, LocalDateTime markedAt) {
+        this.id = id;
+        this.student = new StudentInfo(studentId, studentName, rollNo, email);
+        this.course = new CourseInfo(courseId, courseCode, courseName);
+        this.date = date;
+        this.section = section;
+        this.status = status.name();
+        this.markedBy = markedBy != null ? markedBy.name() : null;
+        this.qrCode = qrCode;
+        this.markedAt = markedAt;
+    }
+    
     // Convert Attendance entity to DTO
     public static AttendanceDTO fromEntity(Attendance attendance) {
         AttendanceDTO dto = new AttendanceDTO();
@@ -0,0 +1,28 @@
+package com.classechobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Provisional acknowledgement for a QR scan accepted by the ingestion pipeline.
+ * The attendance row is written asynchronously; receiptId becomes the id of a newly inserted row.
+ * A scan that replaces an automatic absence updates that row, which keeps its own id, so the row is
+ * identified by (studentId, courseId, date, section). A scan dropped as a duplicate leaves the existing row as it was.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttendanceReceipt {
+    private UUID receiptId;
+    private UUID studentId;
+    private UUID courseId;
+    private LocalDate date;
+    private String section;
+    private String status;
+    private LocalDateTime acceptedAt;
+}
@@ -0,0 +1,25 @@
+package com.classechobackend.dto;
+
+import com.classechobackend.model.Attendance;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Attendance for a whole section roster in one request.
+ * Keys of statuses may be student ids or user ids, like the single-student endpoint.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkAttendanceRequest {
+    private UUID courseId;
+    private LocalDate date;
+    private String section;
+    private Map<UUID, Attendance.AttendanceStatus> statuses = new LinkedHashMap<>();
+}
@@ -0,0 +1,18 @@
+package com.classechobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkAttendanceResult {
+    private int requested;
+    private int changed; // Rows inserted or whose status actually changed
+    private List<UUID> unresolvedStudentIds = new ArrayList<>();
+}
@@ -59,6 +59,25 @@ public class CourseEnrollmentDTO {
         }
     }
     
+    // Flat constructor for JPQL constructor expressions (CourseEnrollmentRepository projections)
+    public CourseEnrollmentDTO(UUID id, UUID studentId, String studentName, String rollNo,
+                               UUID courseId, String courseCode, String courseName, String description,
+                               Integer credits, String semester, String section, String grade, Double percentage,
+                               Integer attendedClasses, Integer totalClasses, LocalDateTime enrolledAt) {
+        this.id = id;
+        this.student = new StudentSummaryDTO(studentId, studentName, rollNo);
+        this.course = new CourseSummaryDTO(courseId, courseCode, courseName, description, credits, semester);
+        this.section = section;
+        this.grade = grade;
+        this.percentage = percentage;
+        this.attendedClasses = attendedClasses;
+        this.totalClasses = totalClasses;
+        // Counters may be null on rows written before they were maintained; treat that as 0
+        int attended = attendedClasses != null ? attendedClasses : 0;
+        this.attendancePercentage = totalClasses == null || totalClasses == 0 ? 0.0 : (attended * 100.0) / totalClasses;
+        this.enrolledAt = enrolledAt;
+    }
+    
     public static CourseEnrollmentDTO fromEntity(CourseEnrollment enrollment) {
         CourseEnrollmentDTO dto = new CourseEnrollmentDTO();
         dto.setId(enrollment.getId());
@@ -36,6 +36,17 @@ public class GradeDTO {
         private String name;
     }
 
+    // Flat constructor for JPQL constructor expressions (GradeRepository projections)
+    public GradeDTO(UUID id, String assessmentName, Grade.AssessmentType assessmentType, Double maxScore,
+                    String courseCode, String courseName, Double score, String letterGrade, LocalDateTime createdAt) {
+        this.id = id;
+        this.assessment = new AssessmentInfo(assessmentName, assessmentType.name().toLowerCase(), maxScore);
+        this.course = new CourseInfo(courseCode, courseName);
+        this.score = score;
+        this.grade = letterGrade;
+        this.createdAt = createdAt;
+    }
+
     public static GradeDTO fromGrade(Grade grade) {
         GradeDTO dto = new GradeDTO();
         dto.setId(grade.getId());
@@ -0,0 +1,60 @@
+package com.classechobackend.dto;
+
+import com.classechobackend.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque keyset position: the sort key and id of the last row of a page.
+ * Clients receive it as a URL-safe Base64 token and pass it back unchanged.
+ */
+public final class PageCursor {
+
+    private final String key;
+    private final UUID id;
+
+    private PageCursor(String key, UUID id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    public static String encode(Object key, UUID id) {
+        String raw = key + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new PageCursor(raw.substring(0, separator), UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid page cursor");
+        }
+    }
+
+    public LocalDate keyAsDate() {
+        try {
+            return LocalDate.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid page cursor");
+        }
+    }
+
+    public LocalDateTime keyAsDateTime() {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("Invalid page cursor");
+        }
+    }
+
+    public UUID getId() {
+        return id;
+    }
+}
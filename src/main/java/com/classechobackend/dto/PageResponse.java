@@ -0,0 +1,51 @@
+package com.classechobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing.
+ * nextCursor is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageResponse<T> {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+
+    // Clamp a requested page size into [1, MAX_LIMIT]
+    public static int clampLimit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(requested, MAX_LIMIT));
+    }
+
+    /**
+     * Build a page from a query that fetched limit + 1 rows; the extra row only signals that more exist
+     * @param rows Rows in keyset order, at most limit + 1
+     * @param limit The page size
+     * @param cursorOf Encodes the cursor of a row
+     */
+    public static <T> PageResponse<T> of(List<T> rows, int limit, Function<T, String> cursorOf) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items = hasMore ? new ArrayList<>(rows.subList(0, limit)) : rows;
+        String nextCursor = hasMore ? cursorOf.apply(items.get(items.size() - 1)) : null;
+        return new PageResponse<>(items, nextCursor, hasMore);
+    }
+
+    public <R> PageResponse<R> map(Function<T, R> mapper) {
+        return new PageResponse<>(items.stream().map(mapper).toList(), nextCursor, hasMore);
+    }
+}
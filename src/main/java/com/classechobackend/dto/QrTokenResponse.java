@@ -0,0 +1,22 @@
+package com.classechobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Current rotating QR token of an attendance session.
+ * Clients re-fetch at refreshAt to keep the displayed code fresh.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QrTokenResponse {
+    private UUID sessionId;
+    private String token;
+    private LocalDateTime refreshAt;
+    private LocalDateTime sessionExpiresAt;
+}
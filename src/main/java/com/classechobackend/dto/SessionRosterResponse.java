@@ -0,0 +1,29 @@
+package com.classechobackend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Live view of an active attendance session: who is enrolled, how many are present and who is still missing.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SessionRosterResponse {
+    private UUID sessionId;
+    private int enrolledCount;
+    private int presentCount;
+    private List<Absentee> absentees;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Absentee {
+        private UUID studentId;
+        private String rollNo;
+    }
+}
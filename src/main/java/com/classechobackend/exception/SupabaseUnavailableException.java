@@ -0,0 +1,11 @@
+package com.classechobackend.exception;
+
+public class SupabaseUnavailableException extends RuntimeException {
+    public SupabaseUnavailableException(String message) {
+        super(message);
+    }
+
+    public SupabaseUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
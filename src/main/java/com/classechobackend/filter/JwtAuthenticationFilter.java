@@ -1,6 +1,8 @@
 package com.classechobackend.filter;
 
-import com.classechobackend.service.JwtService;
+import com.classechobackend.service.IdentityResolver;
+import com.classechobackend.service.JwtPrincipal;
+import com.classechobackend.service.JwtTokenCache;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,12 +17,17 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     @Autowired
-    private JwtService jwtService;
+    private JwtTokenCache jwtTokenCache;
+
+    @Autowired
+    private IdentityResolver identityResolver;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
@@ -36,10 +43,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             final String jwt = authHeader.substring(7);
             
-            if (jwtService.validateToken(jwt)) {
-                String userId = jwtService.extractUserId(jwt);
-                String email = jwtService.extractEmail(jwt);
-                String role = jwtService.extractRole(jwt);
+            // Cached principal when this token was seen recently, otherwise a single signature verification
+            Optional<JwtPrincipal> principal = jwtTokenCache.verify(jwt)
+                    .filter(JwtPrincipal::isAccessToken);
+
+            if (principal.isPresent()) {
+                String userId = principal.get().getUserId();
+                String email = principal.get().getEmail();
+                String role = principal.get().getRole();
 
                 if (userId != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                     List<SimpleGrantedAuthority> authorities = List.of(
@@ -55,9 +66,30 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
                     
-                    request.setAttribute("userId", java.util.UUID.fromString(userId));
+                    UUID userUuid = UUID.fromString(userId);
+                    request.setAttribute("userId", userUuid);
                     request.setAttribute("userEmail", email);
                     request.setAttribute("userRole", role);
+
+                    // Profile id behind the user: from the token claims, or for tokens issued
+                    // before the claims existed, from the cached resolver
+                    if (principal.get().hasProfileId()) {
+                        if (principal.get().getStudentId() != null) {
+                            request.setAttribute("studentId", UUID.fromString(principal.get().getStudentId()));
+                        }
+                        if (principal.get().getTeacherId() != null) {
+                            request.setAttribute("teacherId", UUID.fromString(principal.get().getTeacherId()));
+                        }
+                    } else {
+                        identityResolver.resolve(userUuid, role).ifPresent(identity -> {
+                            if (identity.getStudentId() != null) {
+                                request.setAttribute("studentId", identity.getStudentId());
+                            }
+                            if (identity.getTeacherId() != null) {
+                                request.setAttribute("teacherId", identity.getTeacherId());
+                            }
+                        });
+                    }
                 }
             }
         } catch (Exception e) {
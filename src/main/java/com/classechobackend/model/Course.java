@@ -5,7 +5,11 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -15,6 +19,8 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "courses")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "courses")
+@NaturalIdCache(region = "course-codes")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,6 +30,7 @@ public class Course {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
     
+    @NaturalId
     @Column(nullable = false, unique = true, length = 20)
     private String code;
     
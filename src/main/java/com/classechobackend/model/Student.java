@@ -6,6 +6,8 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -21,6 +23,7 @@ import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "students")
+@NaturalIdCache(region = "student-roll-numbers")
 public class Student {
 
     @Id
@@ -32,6 +35,8 @@ public class Student {
     @JsonIgnore
     private User user;
 
+    // Mutable: a student's roll number can be corrected through the profile update
+    @NaturalId(mutable = true)
     @Column(name = "roll_no", nullable = false, unique = true)
     private String rollNo;
 
@@ -3,6 +3,8 @@ package com.classechobackend.model;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
@@ -19,6 +21,7 @@ import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "teachers")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "teachers")
 public class Teacher {
 
     @Id
@@ -4,16 +4,23 @@ import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.classechobackend.dto.AttendanceDTO;
 import com.classechobackend.model.Attendance;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
-public interface AttendanceRepository extends JpaRepository<Attendance, UUID> {
+public interface AttendanceRepository extends JpaRepository<Attendance, UUID>, AttendanceRepositoryCustom {
     
     @Query("SELECT a FROM Attendance a JOIN FETCH a.student JOIN FETCH a.course WHERE a.student.id = :studentId ORDER BY a.date DESC")
     List<Attendance> findByStudentId(@Param("studentId") UUID studentId);
@@ -35,6 +42,9 @@ public interface AttendanceRepository extends JpaRepository<Attendance, UUID> {
         @Param("studentId") UUID studentId, @Param("courseId") UUID courseId, @Param("date") LocalDate date, @Param("section") String section
     );
     
+    @Query("SELECT a.student.id FROM Attendance a WHERE a.course.id = :courseId AND a.date = :date AND a.section = :section AND a.status = 'PRESENT'")
+    List<UUID> findPresentStudentIds(@Param("courseId") UUID courseId, @Param("date") LocalDate date, @Param("section") String section);
+    
     @Query("SELECT COUNT(a) FROM Attendance a WHERE a.student.id = :studentId AND a.status = 'PRESENT'")
     Long countPresentByStudentId(@Param("studentId") UUID studentId);
     
@@ -49,4 +59,46 @@ public interface AttendanceRepository extends JpaRepository<Attendance, UUID> {
     
     @Query("SELECT COUNT(a) FROM Attendance a WHERE a.course.id = :courseId AND a.date = :date AND a.section = :section AND a.status = 'PRESENT'")
     Long countPresentByCourseIdAndDateAndSection(@Param("courseId") UUID courseId, @Param("date") LocalDate date, @Param("section") String section);
+    
+    // Per-course totals for one student, rows are [courseId, courseCode, courseName, total, present]
+    @Query("SELECT c.id, c.code, c.name, COUNT(a), SUM(CASE WHEN a.status = 'PRESENT' THEN 1 ELSE 0 END) FROM Attendance a JOIN a.course c WHERE a.student.id = :studentId GROUP BY c.id, c.code, c.name ORDER BY c.code")
+    List<Object[]> getCourseTotalsByStudentId(@Param("studentId") UUID studentId);
+    
+    // Latest :limit records per course for one student, rows are [courseId, date, status]
+    @Query(value = "SELECT r.course_id, r.date, r.status FROM ("
+            + "SELECT a.course_id, a.date, a.status, ROW_NUMBER() OVER (PARTITION BY a.course_id ORDER BY a.date DESC) AS rn "
+            + "FROM attendance a WHERE a.student_id = :studentId) r "
+            + "WHERE r.rn <= :limit ORDER BY r.course_id, r.date DESC", nativeQuery = true)
+    List<Object[]> findRecentByStudentIdPerCourse(@Param("studentId") UUID studentId, @Param("limit") int limit);
+    
+    // Keyset pages of a student's attendance, newest first, ordered by (date, id)
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.student JOIN FETCH a.course WHERE a.student.id = :studentId ORDER BY a.date DESC, a.id DESC")
+    List<Attendance> findFirstPageByStudentId(@Param("studentId") UUID studentId, Pageable pageable);
+    
+    @Query("SELECT a FROM Attendance a JOIN FETCH a.student JOIN FETCH a.course WHERE a.student.id = :studentId "
+            + "AND (a.date < :date OR (a.date = :date AND a.id < :id)) ORDER BY a.date DESC, a.id DESC")
+    List<Attendance> findPageByStudentIdAfter(@Param("studentId") UUID studentId, @Param("date") LocalDate date,
+            @Param("id") UUID id, Pageable pageable);
+    
+    // Distinct class days of a course, the columns of the attendance register
+    @Query("SELECT DISTINCT a.date FROM Attendance a WHERE a.course.id = :courseId ORDER BY a.date")
+    List<LocalDate> findDistinctDatesByCourseId(@Param("courseId") UUID courseId);
+    
+    // Register cells grouped by student, rows are [studentId, rollNo, name, date, status].
+    // Scalar rows read through a server-side cursor, nothing is kept in the persistence context.
+    // Must be consumed inside a read-only transaction and closed afterwards.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT s.id, s.rollNo, u.name, a.date, a.status FROM Attendance a JOIN a.student s LEFT JOIN s.user u "
+            + "WHERE a.course.id = :courseId ORDER BY s.rollNo, s.id, a.date")
+    Stream<Object[]> streamRegisterByCourseId(@Param("courseId") UUID courseId);
+    
+    // Course register for one date and section, selected straight into DTOs (no managed entities)
+    @Query("SELECT new com.classechobackend.dto.AttendanceDTO(a.id, s.id, u.name, s.rollNo, u.email, c.id, c.code, c.name, "
+            + "a.date, a.section, a.status, a.markedBy, a.qrCode, a.markedAt) "
+            + "FROM Attendance a JOIN a.student s LEFT JOIN s.user u JOIN a.course c "
+            + "WHERE c.id = :courseId AND a.date = :date AND a.section = :section")
+    List<AttendanceDTO> findDtosByCourseIdAndDateAndSection(@Param("courseId") UUID courseId, @Param("date") LocalDate date, @Param("section") String section);
 }
@@ -0,0 +1,48 @@
+package com.classechobackend.repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.classechobackend.model.Attendance;
+
+/**
+ * Set-based attendance writes that JPQL cannot express (PostgreSQL ON CONFLICT).
+ */
+public interface AttendanceRepositoryCustom {
+
+    /**
+     * Upsert scanned rows as a single JDBC batch. A row that violates the (student_id, course_id, date, section)
+     * unique constraint is skipped, unless the existing row is an automatic ABSENT (marked_by AUTO): that one is
+     * updated in place (status, marked_by, qr_code, marked_at) and keeps its id.
+     * @param rows Attendance rows with id, student, course and markedAt already set
+     * @return Per-row update counts (1 = inserted or replaced an automatic absence, 0 = duplicate)
+     */
+    int[] batchUpsertScans(List<Attendance> rows);
+
+    /**
+     * Record scans the ingestion pipeline gave up on in attendance_dead_letters, as one JDBC batch.
+     * @param rows The dropped attendance rows
+     * @param reason Why they were dropped
+     */
+    void insertDeadLetters(List<Attendance> rows, String reason);
+
+    /**
+     * Upsert manual statuses for one class in a single INSERT ... ON CONFLICT DO UPDATE statement.
+     * Every written row ends up marked_by MANUAL, including existing QR or automatic rows whose status is unchanged.
+     * @param statusesByStudentId Resolved student ids mapped to their status
+     * @return Number of rows inserted or whose status or marked_by changed
+     */
+    int upsertManualStatuses(UUID courseId, LocalDate date, String section,
+                             Map<UUID, Attendance.AttendanceStatus> statusesByStudentId);
+
+    /**
+     * Mark every student enrolled in the sessions' course and section who has no row for the
+     * session date as ABSENT (marked_by AUTO), in one INSERT ... SELECT over course_enrollments.
+     * @param sessionIds Sessions that have just closed
+     * @return Student ids that received an automatic absence, grouped by course id
+     */
+    Map<UUID, List<UUID>> insertAbsentees(Collection<UUID> sessionIds);
+}
@@ -0,0 +1,153 @@
+package com.classechobackend.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.classechobackend.model.Attendance;
+
+public class AttendanceRepositoryCustomImpl implements AttendanceRepositoryCustom {
+
+    // An automatic absence is updated in place; its id (and primary key entry) stays as it was
+    private static final String UPSERT_SCANS =
+        "INSERT INTO attendance (id, student_id, course_id, date, section, status, marked_by, qr_code, marked_at) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            + "ON CONFLICT (student_id, course_id, date, section) "
+            + "DO UPDATE SET status = EXCLUDED.status, marked_by = EXCLUDED.marked_by, "
+            + "qr_code = EXCLUDED.qr_code, marked_at = EXCLUDED.marked_at "
+            + "WHERE attendance.marked_by = 'AUTO'";
+
+    private static final String INSERT_DEAD_LETTER =
+        "INSERT INTO attendance_dead_letters (id, attendance_id, student_id, course_id, date, section, qr_code, marked_at, reason, failed_at) "
+            + "VALUES (gen_random_uuid(), ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // One statement for the whole roster: unnest the parallel arrays into rows and upsert them
+    private static final String UPSERT_MANUAL_STATUSES =
+        "INSERT INTO attendance (id, student_id, course_id, date, section, status, marked_by, marked_at) "
+            + "SELECT gen_random_uuid(), t.student_id, ?, ?, ?, t.status, 'MANUAL', ? "
+            + "FROM unnest(?::uuid[], ?::varchar[]) AS t(student_id, status) "
+            + "ON CONFLICT (student_id, course_id, date, section) "
+            + "DO UPDATE SET status = EXCLUDED.status, marked_by = EXCLUDED.marked_by "
+            + "WHERE attendance.status IS DISTINCT FROM EXCLUDED.status "
+            + "OR attendance.marked_by IS DISTINCT FROM 'MANUAL'";
+
+    // Every enrolled student of the closed sessions' classes without a row yet, in one statement
+    private static final String INSERT_ABSENTEES =
+        "INSERT INTO attendance (id, student_id, course_id, date, section, status, marked_by, marked_at) "
+            + "SELECT gen_random_uuid(), e.student_id, s.course_id, s.date, s.section, 'ABSENT', 'AUTO', ? "
+            + "FROM attendance_sessions s "
+            + "JOIN course_enrollments e ON e.course_id = s.course_id AND e.section = s.section "
+            + "WHERE s.id = ANY(?) "
+            + "ON CONFLICT (student_id, course_id, date, section) DO NOTHING "
+            + "RETURNING course_id, student_id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int[] batchUpsertScans(List<Attendance> rows) {
+        return jdbcTemplate.batchUpdate(UPSERT_SCANS, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Attendance attendance = rows.get(i);
+                ps.setObject(1, attendance.getId());
+                ps.setObject(2, attendance.getStudent().getId());
+                ps.setObject(3, attendance.getCourse().getId());
+                ps.setObject(4, attendance.getDate());
+                ps.setString(5, attendance.getSection());
+                ps.setString(6, attendance.getStatus().name());
+                ps.setString(7, attendance.getMarkedBy() != null ? attendance.getMarkedBy().name() : null);
+                ps.setString(8, attendance.getQrCode());
+                ps.setObject(9, attendance.getMarkedAt());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    @Override
+    public void insertDeadLetters(List<Attendance> rows, String reason) {
+        LocalDateTime failedAt = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(INSERT_DEAD_LETTER, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Attendance attendance = rows.get(i);
+                ps.setObject(1, attendance.getId());
+                ps.setObject(2, attendance.getStudent().getId());
+                ps.setObject(3, attendance.getCourse().getId());
+                ps.setObject(4, attendance.getDate());
+                ps.setString(5, attendance.getSection());
+                ps.setString(6, attendance.getQrCode());
+                ps.setObject(7, attendance.getMarkedAt());
+                ps.setString(8, reason);
+                ps.setObject(9, failedAt);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return rows.size();
+            }
+        });
+    }
+
+    @Override
+    public int upsertManualStatuses(UUID courseId, LocalDate date, String section,
+                                    Map<UUID, Attendance.AttendanceStatus> statusesByStudentId) {
+        if (statusesByStudentId.isEmpty()) {
+            return 0;
+        }
+
+        UUID[] studentIds = new UUID[statusesByStudentId.size()];
+        String[] statuses = new String[statusesByStudentId.size()];
+        int i = 0;
+        for (Map.Entry<UUID, Attendance.AttendanceStatus> entry : statusesByStudentId.entrySet()) {
+            studentIds[i] = entry.getKey();
+            statuses[i] = entry.getValue().name();
+            i++;
+        }
+
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(UPSERT_MANUAL_STATUSES);
+            ps.setObject(1, courseId);
+            ps.setObject(2, date);
+            ps.setString(3, section);
+            ps.setObject(4, LocalDateTime.now());
+            ps.setArray(5, con.createArrayOf("uuid", studentIds));
+            ps.setArray(6, con.createArrayOf("varchar", statuses));
+            return ps;
+        });
+    }
+
+    @Override
+    public Map<UUID, List<UUID>> insertAbsentees(Collection<UUID> sessionIds) {
+        Map<UUID, List<UUID>> absenteesByCourse = new HashMap<>();
+        if (sessionIds.isEmpty()) {
+            return absenteesByCourse;
+        }
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_ABSENTEES);
+            ps.setObject(1, LocalDateTime.now());
+            ps.setArray(2, con.createArrayOf("uuid", sessionIds.toArray()));
+            return ps;
+        }, rs -> {
+            absenteesByCourse.computeIfAbsent(rs.getObject(1, UUID.class), id -> new ArrayList<>())
+                .add(rs.getObject(2, UUID.class));
+        });
+        return absenteesByCourse;
+    }
+}
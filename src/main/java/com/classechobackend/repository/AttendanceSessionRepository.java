@@ -2,6 +2,9 @@ package com.classechobackend.repository;
 
 import com.classechobackend.model.AttendanceSession;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
@@ -23,7 +26,20 @@ public interface AttendanceSessionRepository extends JpaRepository<AttendanceSes
     
     List<AttendanceSession> findByIsActiveTrue();
     
-    List<AttendanceSession> findByExpiresAtBefore(LocalDateTime dateTime);
+    // Deactivate the active session(s) of one class; the row lock serialises concurrent swaps
+    @Modifying
+    @Query("UPDATE AttendanceSession s SET s.isActive = false "
+            + "WHERE s.course.id = :courseId AND s.date = :date AND s.section = :section AND s.isActive = true")
+    int deactivateActive(@Param("courseId") UUID courseId, @Param("date") LocalDate date, @Param("section") String section);
+
+    @Query("SELECT s.id FROM AttendanceSession s WHERE s.isActive = true AND s.expiresAt < :now")
+    List<UUID> findActiveIdsExpiredBefore(@Param("now") LocalDateTime now);
+
+    // Deactivate every active session past its expiry in one statement (served by the partial index
+    // idx_attendance_sessions_active_expires_at, so cost tracks active sessions, not history)
+    @Modifying
+    @Query("UPDATE AttendanceSession s SET s.isActive = false WHERE s.isActive = true AND s.expiresAt < :now")
+    int deactivateExpired(@Param("now") LocalDateTime now);
     
     Optional<AttendanceSession> findByQrCodeAndIsActiveTrue(String qrCode);
     
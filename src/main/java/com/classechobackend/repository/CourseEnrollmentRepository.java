@@ -1,20 +1,23 @@
 package com.classechobackend.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.classechobackend.dto.CourseEnrollmentDTO;
 import com.classechobackend.model.Course;
 import com.classechobackend.model.CourseEnrollment;
 import com.classechobackend.model.Student;
 
 @Repository
-public interface CourseEnrollmentRepository extends JpaRepository<CourseEnrollment, UUID> {
+public interface CourseEnrollmentRepository extends JpaRepository<CourseEnrollment, UUID>, CourseEnrollmentRepositoryCustom {
     
     @Query("SELECT ce FROM CourseEnrollment ce JOIN FETCH ce.student JOIN FETCH ce.course WHERE ce.student = :student")
     List<CourseEnrollment> findByStudent(@Param("student") Student student);
@@ -37,6 +40,10 @@ public interface CourseEnrollmentRepository extends JpaRepository<CourseEnrollme
     @Query("SELECT ce FROM CourseEnrollment ce JOIN FETCH ce.student JOIN FETCH ce.course WHERE ce.course.id = :courseId AND ce.section = :section")
     List<CourseEnrollment> findByCourseIdAndSection(@Param("courseId") UUID courseId, @Param("section") String section);
     
+    // Section roster for the in-memory session index, rows are [studentId, rollNo]
+    @Query("SELECT s.id, s.rollNo FROM CourseEnrollment ce JOIN ce.student s WHERE ce.course.id = :courseId AND ce.section = :section ORDER BY s.rollNo")
+    List<Object[]> findRosterByCourseIdAndSection(@Param("courseId") UUID courseId, @Param("section") String section);
+    
     @Query("SELECT COUNT(e) FROM CourseEnrollment e WHERE e.course.id = :courseId")
     Long countByCourseId(@Param("courseId") UUID courseId);
     
@@ -44,4 +51,27 @@ public interface CourseEnrollmentRepository extends JpaRepository<CourseEnrollme
     Double getAveragePercentageByCourseId(@Param("courseId") UUID courseId);
     
     boolean existsByStudentIdAndCourseId(UUID studentId, UUID courseId);
+    
+    // Attendance counters maintained on write, rows are [totalClasses, attendedClasses]
+    @Query("SELECT e.totalClasses, e.attendedClasses FROM CourseEnrollment e WHERE e.student.id = :studentId AND e.course.id = :courseId")
+    List<Object[]> findAttendanceCountersByStudentIdAndCourseId(@Param("studentId") UUID studentId, @Param("courseId") UUID courseId);
+    
+    @Query("SELECT COALESCE(SUM(e.totalClasses), 0), COALESCE(SUM(e.attendedClasses), 0) FROM CourseEnrollment e WHERE e.student.id = :studentId")
+    List<Object[]> sumAttendanceCountersByStudentId(@Param("studentId") UUID studentId);
+    
+    // Keyset pages of a course's enrollments in enrollment order, ordered by (enrolledAt, id)
+    @Query("SELECT ce FROM CourseEnrollment ce JOIN FETCH ce.student JOIN FETCH ce.course WHERE ce.course.id = :courseId ORDER BY ce.enrolledAt, ce.id")
+    List<CourseEnrollment> findFirstPageByCourseId(@Param("courseId") UUID courseId, Pageable pageable);
+    
+    @Query("SELECT ce FROM CourseEnrollment ce JOIN FETCH ce.student JOIN FETCH ce.course WHERE ce.course.id = :courseId "
+            + "AND (ce.enrolledAt > :enrolledAt OR (ce.enrolledAt = :enrolledAt AND ce.id > :id)) ORDER BY ce.enrolledAt, ce.id")
+    List<CourseEnrollment> findPageByCourseIdAfter(@Param("courseId") UUID courseId, @Param("enrolledAt") LocalDateTime enrolledAt,
+            @Param("id") UUID id, Pageable pageable);
+    
+    // A student's enrollments selected straight into DTOs (no managed entities)
+    @Query("SELECT new com.classechobackend.dto.CourseEnrollmentDTO(ce.id, s.id, u.name, s.rollNo, "
+            + "c.id, c.code, c.name, c.description, c.credits, c.semester, "
+            + "ce.section, ce.grade, ce.percentage, ce.attendedClasses, ce.totalClasses, ce.enrolledAt) "
+            + "FROM CourseEnrollment ce JOIN ce.student s LEFT JOIN s.user u JOIN ce.course c WHERE s.id = :studentId")
+    List<CourseEnrollmentDTO> findDtosByStudentId(@Param("studentId") UUID studentId);
 }
@@ -0,0 +1,26 @@
+package com.classechobackend.repository;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Maintenance of the attendance counters kept on course_enrollments
+ * (attended_classes / total_classes), so stats reads touch one row per course.
+ */
+public interface CourseEnrollmentRepositoryCustom {
+
+    /**
+     * Recompute the counters of the given students in one course from the attendance table.
+     * Cost is bounded by those students' rows in that course, not by the size of the table.
+     * Locks the enrollment rows before counting, so it must run inside the transaction that wrote
+     * the attendance rows; concurrent refreshes of the same enrollment then serialize.
+     * @return Number of enrollment rows updated
+     */
+    int refreshAttendanceCounters(UUID courseId, Collection<UUID> studentIds);
+
+    /**
+     * Rebuild every enrollment's counters from the attendance table (reconciliation).
+     * @return Number of enrollment rows whose counters were corrected
+     */
+    int rebuildAttendanceCounters();
+}
@@ -0,0 +1,61 @@
+package com.classechobackend.repository;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class CourseEnrollmentRepositoryCustomImpl implements CourseEnrollmentRepositoryCustom {
+
+    private static final String COUNTS_BY_ENROLLMENT =
+        "SELECT e.id, COUNT(a.id) AS total, COUNT(a.id) FILTER (WHERE a.status = 'PRESENT') AS present "
+            + "FROM course_enrollments e "
+            + "LEFT JOIN attendance a ON a.student_id = e.student_id AND a.course_id = e.course_id ";
+
+    // Taken in its own statement so the counting UPDATE that follows gets a snapshot newer than any
+    // concurrent writer that held these rows first (READ COMMITTED does not re-run the subquery on re-check)
+    private static final String LOCK_ENROLLMENTS =
+        "SELECT id FROM course_enrollments WHERE course_id = ? AND student_id = ANY(?) ORDER BY id FOR UPDATE";
+
+    private static final String REFRESH_COUNTERS =
+        "UPDATE course_enrollments ce SET total_classes = c.total, attended_classes = c.present "
+            + "FROM (" + COUNTS_BY_ENROLLMENT
+            + "WHERE e.course_id = ? AND e.student_id = ANY(?) GROUP BY e.id) c "
+            + "WHERE ce.id = c.id";
+
+    private static final String REBUILD_COUNTERS =
+        "UPDATE course_enrollments ce SET total_classes = c.total, attended_classes = c.present "
+            + "FROM (" + COUNTS_BY_ENROLLMENT + "GROUP BY e.id) c "
+            + "WHERE ce.id = c.id "
+            + "AND (ce.total_classes IS DISTINCT FROM c.total OR ce.attended_classes IS DISTINCT FROM c.present)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public int refreshAttendanceCounters(UUID courseId, Collection<UUID> studentIds) {
+        if (studentIds.isEmpty()) {
+            return 0;
+        }
+        UUID[] ids = studentIds.toArray(new UUID[0]);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOCK_ENROLLMENTS);
+            ps.setObject(1, courseId);
+            ps.setArray(2, con.createArrayOf("uuid", ids));
+            return ps;
+        }, rs -> { });
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(REFRESH_COUNTERS);
+            ps.setObject(1, courseId);
+            ps.setArray(2, con.createArrayOf("uuid", ids));
+            return ps;
+        });
+    }
+
+    @Override
+    public int rebuildAttendanceCounters() {
+        return jdbcTemplate.update(REBUILD_COUNTERS);
+    }
+}
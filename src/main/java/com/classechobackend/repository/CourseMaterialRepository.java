@@ -1,8 +1,10 @@
 package com.classechobackend.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -20,4 +22,12 @@ public interface CourseMaterialRepository extends JpaRepository<CourseMaterial,
     List<CourseMaterial> findByCourseIdAndType(@Param("courseId") UUID courseId, @Param("type") CourseMaterial.MaterialType type);
     
     Long countByCourseId(UUID courseId);
+    
+    // Keyset pages over all materials, newest first, ordered by (uploadedAt, id)
+    @Query("SELECT cm FROM CourseMaterial cm JOIN FETCH cm.course ORDER BY cm.uploadedAt DESC, cm.id DESC")
+    List<CourseMaterial> findFirstPage(Pageable pageable);
+    
+    @Query("SELECT cm FROM CourseMaterial cm JOIN FETCH cm.course "
+            + "WHERE cm.uploadedAt < :uploadedAt OR (cm.uploadedAt = :uploadedAt AND cm.id < :id) ORDER BY cm.uploadedAt DESC, cm.id DESC")
+    List<CourseMaterial> findPageAfter(@Param("uploadedAt") LocalDateTime uploadedAt, @Param("id") UUID id, Pageable pageable);
 }
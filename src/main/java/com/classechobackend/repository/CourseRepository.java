@@ -1,7 +1,6 @@
 package com.classechobackend.repository;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -13,9 +12,7 @@ import com.classechobackend.model.Course;
 import com.classechobackend.model.Teacher;
 
 @Repository
-public interface CourseRepository extends JpaRepository<Course, UUID> {
-    
-    Optional<Course> findByCode(String code);
+public interface CourseRepository extends JpaRepository<Course, UUID>, CourseRepositoryCustom {
     
     @Query("SELECT c FROM Course c JOIN FETCH c.teacher WHERE c.teacher = :teacher")
     List<Course> findByTeacher(@Param("teacher") Teacher teacher);
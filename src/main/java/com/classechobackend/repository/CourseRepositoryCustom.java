@@ -0,0 +1,17 @@
+package com.classechobackend.repository;
+
+import java.util.Optional;
+
+import com.classechobackend.model.Course;
+
+/**
+ * Course lookups that go through Hibernate's natural-id and second-level caches.
+ */
+public interface CourseRepositoryCustom {
+
+    /**
+     * Load a course by its code, resolving code to id from the natural-id cache
+     * and the course itself from the second-level cache when both are warm.
+     */
+    Optional<Course> findByCode(String code);
+}
@@ -0,0 +1,23 @@
+package com.classechobackend.repository;
+
+import java.util.Optional;
+
+import org.hibernate.Session;
+
+import com.classechobackend.model.Course;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+public class CourseRepositoryCustomImpl implements CourseRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Course> findByCode(String code) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Course.class)
+                .loadOptional(code);
+    }
+}
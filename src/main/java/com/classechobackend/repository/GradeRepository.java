@@ -1,14 +1,17 @@
 package com.classechobackend.repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.classechobackend.dto.GradeDTO;
 import com.classechobackend.model.Grade;
 
 @Repository
@@ -46,4 +49,32 @@ public interface GradeRepository extends JpaRepository<Grade, UUID> {
 
     @Query("SELECT g.letterGrade, COUNT(g) FROM Grade g WHERE g.course.id = :courseId GROUP BY g.letterGrade")
     List<Object[]> getGradeDistributionByCourseId(@Param("courseId") UUID courseId);
+
+    // Per assessment type for one student in one course, rows are [assessmentType, averagePercentage, count]
+    @Query("SELECT g.assessmentType, AVG(CASE WHEN g.maxScore = 0 THEN 0.0 ELSE g.score / g.maxScore * 100 END), COUNT(g) "
+            + "FROM Grade g WHERE g.student.id = :studentId AND g.course.id = :courseId GROUP BY g.assessmentType")
+    List<Object[]> getPerformanceBreakdown(@Param("studentId") UUID studentId, @Param("courseId") UUID courseId);
+
+    // Per student and assessment type for a whole course,
+    // rows are [studentId, rollNo, assessmentType, averagePercentage, count] ordered by roll number
+    @Query("SELECT s.id, s.rollNo, g.assessmentType, "
+            + "AVG(CASE WHEN g.maxScore = 0 THEN 0.0 ELSE g.score / g.maxScore * 100 END), COUNT(g) "
+            + "FROM Grade g JOIN g.student s WHERE g.course.id = :courseId "
+            + "GROUP BY s.id, s.rollNo, g.assessmentType ORDER BY s.rollNo, g.assessmentType")
+    List<Object[]> getPerformanceBreakdownByCourseId(@Param("courseId") UUID courseId);
+
+    // Keyset pages of a course's grades, newest first, ordered by (createdAt, id)
+    @Query("SELECT g FROM Grade g JOIN FETCH g.student JOIN FETCH g.course WHERE g.course.id = :courseId ORDER BY g.createdAt DESC, g.id DESC")
+    List<Grade> findFirstPageByCourseId(@Param("courseId") UUID courseId, Pageable pageable);
+
+    @Query("SELECT g FROM Grade g JOIN FETCH g.student JOIN FETCH g.course WHERE g.course.id = :courseId "
+            + "AND (g.createdAt < :createdAt OR (g.createdAt = :createdAt AND g.id < :id)) ORDER BY g.createdAt DESC, g.id DESC")
+    List<Grade> findPageByCourseIdAfter(@Param("courseId") UUID courseId, @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") UUID id, Pageable pageable);
+
+    // A student's grades selected straight into DTOs (no managed entities), newest first
+    @Query("SELECT new com.classechobackend.dto.GradeDTO(g.id, g.assessmentName, g.assessmentType, g.maxScore, "
+            + "c.code, c.name, g.score, g.letterGrade, g.createdAt) "
+            + "FROM Grade g JOIN g.course c WHERE g.student.id = :studentId ORDER BY g.createdAt DESC")
+    List<GradeDTO> findDtosByStudentId(@Param("studentId") UUID studentId);
 }
@@ -1,20 +1,29 @@
 package com.classechobackend.repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.classechobackend.model.Student;
 
 @Repository
-public interface StudentRepository extends JpaRepository<Student, UUID> {
+public interface StudentRepository extends JpaRepository<Student, UUID>, StudentRepositoryCustom {
     Optional<Student> findByUserId(UUID userId);
-    Optional<Student> findByRollNo(String rollNo);
     boolean existsByRollNo(String rollNo);
     
     @Query("SELECT s FROM Student s WHERE s.user.id = :userId")
     Optional<Student> findByUserIdWithUser(UUID userId);
+
+    @Query("SELECT s.id FROM Student s WHERE s.user.id = :userId")
+    Optional<UUID> findIdByUserId(@Param("userId") UUID userId);
+
+    // Resolve a mix of student ids and user ids in one query, rows are [studentId, userId]
+    @Query("SELECT s.id, s.user.id FROM Student s WHERE s.id IN :ids OR s.user.id IN :ids")
+    List<Object[]> findIdPairsByIdOrUserIdIn(@Param("ids") Collection<UUID> ids);
 }
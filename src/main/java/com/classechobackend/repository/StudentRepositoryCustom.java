@@ -0,0 +1,17 @@
+package com.classechobackend.repository;
+
+import java.util.Optional;
+
+import com.classechobackend.model.Student;
+
+/**
+ * Student lookups that go through Hibernate's natural-id cache.
+ */
+public interface StudentRepositoryCustom {
+
+    /**
+     * Load a student by roll number. The roll number to id mapping comes from the
+     * natural-id cache, so a warm lookup is a primary-key load.
+     */
+    Optional<Student> findByRollNo(String rollNo);
+}
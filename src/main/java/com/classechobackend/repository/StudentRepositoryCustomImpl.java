@@ -0,0 +1,23 @@
+package com.classechobackend.repository;
+
+import java.util.Optional;
+
+import org.hibernate.Session;
+
+import com.classechobackend.model.Student;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+public class StudentRepositoryCustomImpl implements StudentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<Student> findByRollNo(String rollNo) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Student.class)
+                .loadOptional(rollNo);
+    }
+}
@@ -1,18 +1,34 @@
 package com.classechobackend.repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.classechobackend.model.Teacher;
 
+import jakarta.persistence.QueryHint;
+
 @Repository
 public interface TeacherRepository extends JpaRepository<Teacher, UUID> {
+    // Query cache holds the teacher id per user id, the teacher itself comes from the entity cache
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Teacher> findByUserId(UUID userId);
     
     @Query("SELECT t FROM Teacher t WHERE t.user.id = :userId")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Teacher> findByUserIdWithUser(UUID userId);
+
+    @Query("SELECT t.id FROM Teacher t WHERE t.user.id = :userId")
+    Optional<UUID> findIdByUserId(@Param("userId") UUID userId);
+
+    // Match either a teacher id or a user id in one query, rows are [teacherId, userId]
+    @Query("SELECT t.id, t.user.id FROM Teacher t WHERE t.id = :id OR t.user.id = :id")
+    List<Object[]> findIdPairsByIdOrUserId(@Param("id") UUID id);
 }
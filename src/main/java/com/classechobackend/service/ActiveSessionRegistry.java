@@ -0,0 +1,176 @@
+package com.classechobackend.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.classechobackend.model.AttendanceSession;
+
+/**
+ * In-process registry of active attendance sessions keyed by QR code.
+ * Lets a QR scan be validated and resolved without a database read.
+ * The database stays the source of truth: a miss here (e.g. after a restart or
+ * when the QR was generated on another instance) falls back to a repository lookup.
+ */
+@Component
+public class ActiveSessionRegistry {
+
+    // Longer than any session lives, so a closed session cannot be revived from a stale read before it expires anyway
+    private static final Duration CLOSED_RETENTION = Duration.ofMinutes(10);
+
+    private final Map<String, ActiveSession> sessionsByQrCode = new ConcurrentHashMap<>();
+    private final Map<UUID, ActiveSession> sessionsById = new ConcurrentHashMap<>();
+    // Tombstones of closed sessions, by the time they were closed
+    private final Map<UUID, LocalDateTime> closedSessions = new ConcurrentHashMap<>();
+
+    private final SessionRosterRegistry rosters;
+
+    public ActiveSessionRegistry(SessionRosterRegistry rosters) {
+        this.rosters = rosters;
+    }
+
+    // Register a session once the surrounding transaction commits (immediately if there is none).
+    // A closed session is never registered again, even from a read that still saw it active
+    public ActiveSession register(AttendanceSession session) {
+        ActiveSession snapshot = new ActiveSession(session);
+        afterCommit(() -> {
+            if (!isClosed(snapshot.getSessionId())) {
+                put(snapshot);
+            }
+        });
+        return snapshot;
+    }
+
+    // Look up a session by QR code; expired entries are still returned so callers can report expiry, closed ones are not
+    public Optional<ActiveSession> findByQrCode(String qrCode) {
+        return Optional.ofNullable(sessionsByQrCode.get(qrCode))
+                .filter(session -> !isClosed(session.getSessionId()));
+    }
+
+    public Optional<ActiveSession> findById(UUID sessionId) {
+        return Optional.ofNullable(sessionsById.get(sessionId))
+                .filter(session -> !isClosed(sessionId));
+    }
+
+    // Refuse a session from now on: lookups miss it and register() no longer brings it back
+    public void close(UUID sessionId) {
+        closedSessions.put(sessionId, LocalDateTime.now());
+    }
+
+    // Undo close() when the session could not be deactivated after all
+    public void reopen(UUID sessionId) {
+        closedSessions.remove(sessionId);
+    }
+
+    public boolean isClosed(UUID sessionId) {
+        return closedSessions.containsKey(sessionId);
+    }
+
+    // Drop a closed session once the deactivating transaction commits; its tombstone stays until it ages out
+    public void removeClosed(UUID sessionId) {
+        afterCommit(() -> remove(sessionId));
+    }
+
+    public void remove(UUID sessionId) {
+        ActiveSession removed = sessionsById.remove(sessionId);
+        if (removed != null) {
+            sessionsByQrCode.remove(removed.getQrCode(), removed);
+        }
+        rosters.remove(sessionId);
+    }
+
+    // Drop the sessions of one class (course, date, section) once the surrounding transaction commits, e.g. when
+    // a new QR replaces them. A rollback leaves them registered. Only the sessions registered now are dropped, so a
+    // session registered by a later swap survives this commit's callback even if it runs late
+    public void removeFor(UUID courseId, LocalDate date, String section) {
+        List<UUID> replaced = new ArrayList<>();
+        for (ActiveSession session : sessionsById.values()) {
+            if (session.getCourseId().equals(courseId) && session.getDate().equals(date)
+                    && Objects.equals(session.getSection(), section)) {
+                replaced.add(session.getSessionId());
+            }
+        }
+        afterCommit(() -> replaced.forEach(this::remove));
+    }
+
+    // Drop every session whose expiry has passed and every aged-out tombstone, returns the number of sessions removed
+    public int removeExpired() {
+        LocalDateTime closedBefore = LocalDateTime.now().minus(CLOSED_RETENTION);
+        closedSessions.values().removeIf(closedAt -> closedAt.isBefore(closedBefore));
+
+        int removed = 0;
+        for (ActiveSession session : sessionsById.values()) {
+            if (session.isExpired()) {
+                remove(session.getSessionId());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public int size() {
+        return sessionsById.size();
+    }
+
+    private void put(ActiveSession session) {
+        sessionsById.put(session.getSessionId(), session);
+        sessionsByQrCode.put(session.getQrCode(), session);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Immutable snapshot of the fields a scan needs, detached from the persistence context
+    public static final class ActiveSession {
+        private final UUID sessionId;
+        private final UUID courseId;
+        private final UUID teacherId;
+        private final String qrCode;
+        private final String section;
+        private final LocalDate date;
+        private final LocalDateTime expiresAt;
+
+        private ActiveSession(AttendanceSession session) {
+            this.sessionId = session.getId();
+            this.courseId = session.getCourse().getId();
+            this.teacherId = session.getTeacher().getId();
+            this.qrCode = session.getQrCode();
+            this.section = session.getSection();
+            this.date = session.getDate();
+            this.expiresAt = session.getExpiresAt();
+        }
+
+        public UUID getSessionId() { return sessionId; }
+        public UUID getCourseId() { return courseId; }
+        public UUID getTeacherId() { return teacherId; }
+        public String getQrCode() { return qrCode; }
+        public String getSection() { return section; }
+        public LocalDate getDate() { return date; }
+        public LocalDateTime getExpiresAt() { return expiresAt; }
+
+        public boolean isExpired() {
+            return LocalDateTime.now().isAfter(expiresAt);
+        }
+    }
+}
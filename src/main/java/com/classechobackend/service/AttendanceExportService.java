@@ -0,0 +1,183 @@
+package com.classechobackend.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.classechobackend.repository.AttendanceRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Streams a course's attendance register (one row per student, one column per class day).
+ * Cells arrive from a JDBC cursor ordered by student, and each student's row is written as soon
+ * as the next student starts, so memory is bounded by the number of class days, not by course size.
+ */
+@Service
+public class AttendanceExportService {
+
+    public enum Format { CSV, NDJSON }
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Write the register to the output stream.
+     * Runs in its own read-only transaction because the cursor must stay open while rows are written.
+     * Repeatable read gives the column query and the cell cursor one snapshot, so a class day written
+     * between the two cannot show up as a cell without a column.
+     * @param courseId The course to export
+     * @param format CSV or NDJSON
+     * @param out The response stream; not closed here
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public void exportRegister(UUID courseId, Format format, OutputStream out) throws IOException {
+        List<LocalDate> dates = attendanceRepository.findDistinctDatesByCourseId(courseId);
+        Map<LocalDate, Integer> columnOf = new HashMap<>();
+        for (int i = 0; i < dates.size(); i++) {
+            columnOf.put(dates.get(i), i);
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer, dates) : new NdjsonRowWriter(writer, dates);
+        rowWriter.header();
+
+        try (Stream<Object[]> cells = attendanceRepository.streamRegisterByCourseId(courseId)) {
+            StudentRow current = null;
+            for (Object[] cell : (Iterable<Object[]>) cells::iterator) {
+                UUID studentId = (UUID) cell[0];
+                if (current == null || !current.studentId.equals(studentId)) {
+                    if (current != null) {
+                        rowWriter.row(current);
+                    }
+                    current = new StudentRow(studentId, (String) cell[1], (String) cell[2], dates.size());
+                }
+                Integer column = columnOf.get((LocalDate) cell[3]);
+                if (column != null) {
+                    current.statuses[column] = String.valueOf(cell[4]);
+                }
+            }
+            if (current != null) {
+                rowWriter.row(current);
+            }
+        }
+        writer.flush();
+    }
+
+    private static final class StudentRow {
+        private final UUID studentId;
+        private final String rollNo;
+        private final String name;
+        private final String[] statuses;
+
+        private StudentRow(UUID studentId, String rollNo, String name, int days) {
+            this.studentId = studentId;
+            this.rollNo = rollNo;
+            this.name = name;
+            this.statuses = new String[days];
+        }
+    }
+
+    private interface RowWriter {
+        void header() throws IOException;
+
+        void row(StudentRow row) throws IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private final List<LocalDate> dates;
+
+        private CsvRowWriter(Writer writer, List<LocalDate> dates) {
+            this.writer = writer;
+            this.dates = dates;
+        }
+
+        @Override
+        public void header() throws IOException {
+            writer.write("student_id,roll_no,name");
+            for (LocalDate date : dates) {
+                writer.write(',');
+                writer.write(date.toString());
+            }
+            writer.write('\n');
+        }
+
+        @Override
+        public void row(StudentRow row) throws IOException {
+            writer.write(row.studentId.toString());
+            writer.write(',');
+            writer.write(escape(row.rollNo));
+            writer.write(',');
+            writer.write(escape(row.name));
+            for (String status : row.statuses) {
+                writer.write(',');
+                if (status != null) {
+                    writer.write(status);
+                }
+            }
+            writer.write('\n');
+        }
+
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            // RFC 4180: quote anything containing a separator, a quote or a line break (CR or LF)
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final List<LocalDate> dates;
+
+        private NdjsonRowWriter(Writer writer, List<LocalDate> dates) {
+            this.writer = writer;
+            this.dates = dates;
+        }
+
+        @Override
+        public void header() {
+            // NDJSON rows are self-describing
+        }
+
+        @Override
+        public void row(StudentRow row) throws IOException {
+            Map<String, String> attendance = new LinkedHashMap<>();
+            for (int i = 0; i < row.statuses.length; i++) {
+                if (row.statuses[i] != null) {
+                    attendance.put(dates.get(i).toString(), row.statuses[i]);
+                }
+            }
+
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("studentId", row.studentId);
+            line.put("rollNo", row.rollNo);
+            line.put("name", row.name);
+            line.put("attendance", attendance);
+            writer.write(objectMapper.writeValueAsString(line));
+            writer.write('\n');
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package com.classechobackend.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.classechobackend.dto.AttendanceReceipt;
+import com.classechobackend.model.Attendance;
+import com.classechobackend.repository.AttendanceRepository;
+import com.classechobackend.repository.CourseEnrollmentRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind pipeline for QR scans.
+ * Scans are accepted into a bounded queue and acknowledged with a provisional receipt;
+ * a background flusher writes them as JDBC batch inserts every flush interval or
+ * whenever a full batch is available, whichever comes first. A failed batch is halved until
+ * the rows that fail are isolated, and those are retried after an exponential backoff.
+ */
+@Service
+public class AttendanceIngestionService {
+
+    private final AttendanceRepository attendanceRepository;
+    private final CourseEnrollmentRepository enrollmentRepository;
+    private final SessionRosterRegistry sessionRosters;
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<PendingScan> queue;
+    // Scans that failed to write, each released to the flusher once its backoff has passed
+    private final DelayQueue<PendingScan> retries = new DelayQueue<>();
+    // (student, course, date, section) keys currently queued, rejects duplicate scans before they reach the DB
+    private final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+    // Held only while a batch is written; fair so a synchronous flushNow queues behind at most the batch in progress
+    private final ReentrantLock flushLock = new ReentrantLock(true);
+
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final int maxAttempts;
+    private final long retryBackoffMs;
+    private final long flushNowTimeoutMs;
+
+    private final Timer flushLag;
+    private final Counter insertedRows;
+    private final Counter duplicateRows;
+    private final Counter failedRows;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public AttendanceIngestionService(
+            AttendanceRepository attendanceRepository,
+            CourseEnrollmentRepository enrollmentRepository,
+            SessionRosterRegistry sessionRosters,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${attendance.ingest.queue-capacity:5000}") int queueCapacity,
+            @Value("${attendance.ingest.batch-size:200}") int batchSize,
+            @Value("${attendance.ingest.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${attendance.ingest.max-attempts:5}") int maxAttempts,
+            @Value("${attendance.ingest.retry-backoff-ms:1000}") long retryBackoffMs,
+            @Value("${attendance.ingest.flush-now-timeout-ms:10000}") long flushNowTimeoutMs) {
+        this.attendanceRepository = attendanceRepository;
+        this.enrollmentRepository = enrollmentRepository;
+        this.sessionRosters = sessionRosters;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMs = retryBackoffMs;
+        this.flushNowTimeoutMs = flushNowTimeoutMs;
+
+        this.flushLag = Timer.builder("attendance.ingest.flush.lag")
+                .description("Time from scan acceptance to the attendance row being committed")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.insertedRows = Counter.builder("attendance.ingest.rows").tag("outcome", "inserted").register(meterRegistry);
+        this.duplicateRows = Counter.builder("attendance.ingest.rows").tag("outcome", "duplicate").register(meterRegistry);
+        this.failedRows = Counter.builder("attendance.ingest.rows").tag("outcome", "failed").register(meterRegistry);
+        meterRegistry.gauge("attendance.ingest.queue.size", queue, BlockingQueue::size);
+        meterRegistry.gauge("attendance.ingest.retry.size", retries, DelayQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlusher, "attendance-ingest-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+        flushNow();
+    }
+
+    /**
+     * Accept a scan for asynchronous insertion.
+     * @param attendance A fully populated, not yet persisted attendance row
+     * @return Provisional receipt whose id becomes the attendance row id
+     */
+    public AttendanceReceipt submit(Attendance attendance) {
+        String key = keyOf(attendance);
+        if (!pendingKeys.add(key)) {
+            throw new RuntimeException("Attendance already marked for this session");
+        }
+
+        if (!queue.offer(new PendingScan(attendance, key))) {
+            pendingKeys.remove(key);
+            throw new RuntimeException("Attendance queue is full, please scan again");
+        }
+
+        return new AttendanceReceipt(
+                attendance.getId(),
+                attendance.getStudent().getId(),
+                attendance.getCourse().getId(),
+                attendance.getDate(),
+                attendance.getSection(),
+                "PENDING",
+                attendance.getMarkedAt()
+        );
+    }
+
+    /**
+     * Synchronously write everything queued so far, including scans still backing off from a failure
+     * (each gets one attempt here; a scan that fails again waits out its next backoff as usual).
+     * Waits for a batch the flusher is already writing, but never longer than the flush-now timeout
+     * in total; whatever is left then stays queued for the background flusher.
+     * @return Number of scans drained from the queue
+     */
+    public int flushNow() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushNowTimeoutMs);
+        int drained = 0;
+        List<PendingScan> backingOff = takeAllRetries();
+        int nextRetry = 0;
+        List<PendingScan> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                while (nextRetry < backingOff.size() && batch.size() < batchSize) {
+                    batch.add(backingOff.get(nextRetry++));
+                }
+                queue.drainTo(batch, batchSize - batch.size());
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                drained += batch.size();
+                if (!writeLocked(batch, deadline - System.nanoTime())) {
+                    drained -= batch.size();
+                    requeue(batch);
+                    retries.addAll(backingOff.subList(nextRetry, backingOff.size()));
+                    System.err.println("Attendance flush timed out after " + flushNowTimeoutMs + " ms, "
+                            + getQueueSize() + " scans left to the background flusher");
+                    return drained;
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained -= batch.size();
+            requeue(batch);
+            retries.addAll(backingOff.subList(nextRetry, backingOff.size()));
+        }
+        return drained;
+    }
+
+    public int getQueueSize() {
+        return queue.size() + retries.size();
+    }
+
+    // Polls and fills batches without the lock, so a waiting flushNow only ever queues behind a write
+    private void runFlusher() {
+        List<PendingScan> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                // Retries whose backoff has passed go first, they have waited longest
+                PendingScan first = retries.poll();
+                if (first == null) {
+                    first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                }
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                retries.drainTo(batch, batchSize - batch.size());
+
+                // Fill the batch until it is full or the oldest scan has waited a full interval
+                long deadline = first.acceptedAtNanos + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingScan next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                writeLocked(batch, Long.MAX_VALUE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                requeue(batch);
+                return;
+            } catch (Exception e) {
+                System.err.println("ERROR in attendance ingestion flusher: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Write one batch under the flush lock, giving up if the lock is not free within the timeout
+    private boolean writeLocked(List<PendingScan> batch, long timeoutNanos) throws InterruptedException {
+        if (timeoutNanos == Long.MAX_VALUE) {
+            flushLock.lockInterruptibly();
+        } else if (!flushLock.tryLock(Math.max(0, timeoutNanos), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        try {
+            write(batch);
+            return true;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void write(List<PendingScan> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<Attendance> rows = new ArrayList<>(batch.size());
+        for (PendingScan scan : batch) {
+            rows.add(scan.attendance);
+        }
+
+        try {
+            int[] counts = transactionTemplate.execute(status -> {
+                int[] inserted = attendanceRepository.batchUpsertScans(rows);
+                refreshCounters(rows, inserted);
+                return inserted;
+            });
+
+            long now = System.nanoTime();
+            for (int i = 0; i < batch.size(); i++) {
+                PendingScan scan = batch.get(i);
+                pendingKeys.remove(scan.key);
+                flushLag.record(Duration.ofNanos(now - scan.acceptedAtNanos));
+                if (counts != null && counts[i] == 0) {
+                    duplicateRows.increment();
+                } else {
+                    insertedRows.increment();
+                }
+            }
+        } catch (Exception e) {
+            // One bad row fails the whole statement; halve the batch until the rows that fail are on their own
+            if (batch.size() > 1 && isRowFailure(e)) {
+                int half = batch.size() / 2;
+                write(new ArrayList<>(batch.subList(0, half)));
+                write(new ArrayList<>(batch.subList(half, batch.size())));
+                return;
+            }
+            System.err.println("ERROR writing attendance batch of " + batch.size() + ": " + e.getMessage());
+            for (PendingScan scan : batch) {
+                scan.attempts++;
+                scan.lastError = e.getMessage();
+            }
+            retryLater(batch);
+        }
+    }
+
+    // An unreachable or timing out database fails every row alike, splitting the batch would only multiply attempts
+    private static boolean isRowFailure(Exception e) {
+        return !(e instanceof TransientDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransactionException);
+    }
+
+    // Refresh enrollment attendance counters for the rows that were actually inserted, one statement per course
+    private void refreshCounters(List<Attendance> rows, int[] counts) {
+        Map<UUID, Set<UUID>> studentsByCourse = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            if (counts[i] != 0) {
+                Attendance row = rows.get(i);
+                studentsByCourse.computeIfAbsent(row.getCourse().getId(), id -> new HashSet<>()).add(row.getStudent().getId());
+            }
+        }
+        studentsByCourse.forEach(enrollmentRepository::refreshAttendanceCounters);
+    }
+
+    // Hold failed scans back for a backoff that doubles with every attempt; scans out of attempts are dead-lettered
+    private void retryLater(List<PendingScan> batch) {
+        List<Attendance> outOfAttempts = new ArrayList<>();
+        String lastError = null;
+        for (PendingScan scan : batch) {
+            if (scan.attempts >= maxAttempts) {
+                outOfAttempts.add(scan.attendance);
+                lastError = scan.lastError;
+                release(scan);
+                continue;
+            }
+            long backoffMs = retryBackoffMs << Math.min(scan.attempts - 1, 20);
+            scan.retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMs);
+            retries.add(scan);
+        }
+
+        deadLetter(outOfAttempts, "Failed after " + maxAttempts + " attempts: " + lastError);
+    }
+
+    // Put scans that were never written back in the queue; scans without room are dropped to the dead-letter table
+    private void requeue(List<PendingScan> batch) {
+        List<Attendance> outOfRoom = new ArrayList<>();
+        for (PendingScan scan : batch) {
+            if (!queue.offer(scan)) {
+                outOfRoom.add(scan.attendance);
+                release(scan);
+            }
+        }
+
+        deadLetter(outOfRoom, "Ingestion queue full on retry");
+    }
+
+    // Take every scan waiting out a backoff, due or not
+    private List<PendingScan> takeAllRetries() {
+        List<PendingScan> taken = new ArrayList<>();
+        for (PendingScan scan : retries) {
+            if (retries.remove(scan)) {
+                taken.add(scan);
+            }
+        }
+        return taken;
+    }
+
+    // A dropped scan was acknowledged as PENDING; free the student to scan again
+    private void release(PendingScan scan) {
+        Attendance attendance = scan.attendance;
+        pendingKeys.remove(scan.key);
+        sessionRosters.scanDropped(attendance.getCourse().getId(), attendance.getDate(), attendance.getSection(),
+                attendance.getStudent().getId());
+        failedRows.increment();
+    }
+
+    // Keep dropped scans for follow-up; if the database is what failed, the log is the last resort
+    private void deadLetter(List<Attendance> rows, String reason) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            attendanceRepository.insertDeadLetters(rows, reason);
+            System.err.println("Dead-lettered " + rows.size() + " attendance scans: " + reason);
+        } catch (Exception e) {
+            System.err.println("ERROR dead-lettering " + rows.size() + " attendance scans (" + reason + "): " + e.getMessage());
+            for (Attendance row : rows) {
+                System.err.println("Dropped attendance scan " + row.getId() + " student=" + row.getStudent().getId()
+                        + " course=" + row.getCourse().getId() + " date=" + row.getDate() + " section=" + row.getSection()
+                        + " markedAt=" + row.getMarkedAt());
+            }
+        }
+    }
+
+    private static String keyOf(Attendance attendance) {
+        return attendance.getStudent().getId() + "|" + attendance.getCourse().getId() + "|"
+                + attendance.getDate() + "|" + attendance.getSection();
+    }
+
+    private static final class PendingScan implements Delayed {
+        private final Attendance attendance;
+        private final String key;
+        private final long acceptedAtNanos = System.nanoTime();
+        private int attempts;
+        private String lastError;
+        // When a failed scan may be written again
+        private long retryAtNanos;
+
+        private PendingScan(Attendance attendance, String key) {
+            this.attendance = attendance;
+            this.key = key;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(retryAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(retryAtNanos, ((PendingScan) other).retryAtNanos);
+        }
+    }
+}
@@ -3,18 +3,34 @@ package com.classechobackend.service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.classechobackend.dto.AttendanceDTO;
+import com.classechobackend.dto.AttendanceReceipt;
+import com.classechobackend.dto.BulkAttendanceResult;
+import com.classechobackend.dto.PageCursor;
+import com.classechobackend.dto.PageResponse;
+import com.classechobackend.dto.QrTokenResponse;
+import com.classechobackend.dto.SessionRosterResponse;
 import com.classechobackend.model.Attendance;
 import com.classechobackend.model.AttendanceSession;
 import com.classechobackend.model.Course;
@@ -22,13 +38,22 @@ import com.classechobackend.model.Student;
 import com.classechobackend.model.Teacher;
 import com.classechobackend.repository.AttendanceRepository;
 import com.classechobackend.repository.AttendanceSessionRepository;
+import com.classechobackend.repository.CourseEnrollmentRepository;
 import com.classechobackend.repository.CourseRepository;
+import com.classechobackend.repository.StudentRepository;
 import com.classechobackend.repository.TeacherRepository;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+
 @Service
 @Transactional
 public class AttendanceService {
 
+    private static final int RECENT_RECORDS_PER_COURSE = 10;
+    private static final int MAX_SESSION_SWAP_ATTEMPTS = 3;
+
     @Autowired
     private AttendanceRepository attendanceRepository;
 
@@ -41,33 +66,98 @@ public class AttendanceService {
     @Autowired
     private TeacherRepository teacherRepository;
 
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private CourseEnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private SessionRosterRegistry sessionRosters;
+
+    @Autowired
+    private AttendanceIngestionService ingestionService;
+
+    @Autowired
+    private QrTokenService qrTokenService;
+
+    // Whether the session's static qrCode is still accepted next to the rotating signed tokens
+    @Value("${attendance.qr.accept-static-codes:true}")
+    private boolean acceptStaticCodes;
+
+    @Value("${attendance.counters.reconcile-on-startup:false}")
+    private boolean reconcileCountersOnStartup;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Rows deactivated per expiry sweep
+    private DistributionSummary expiredSessionsPerRun;
+
+    private TransactionTemplate transactionTemplate;
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+
+        expiredSessionsPerRun = DistributionSummary.builder("attendance.sessions.expired")
+            .description("Attendance sessions deactivated per expiry sweep")
+            .register(meterRegistry);
+    }
+
     // Generate QR code for attendance (5-minute expiry)
+    // The swap runs in its own transaction: one UPDATE deactivates the class's current session, one INSERT adds
+    // the new one, and the partial unique index on (course_id, date, section) WHERE is_active rejects a second
+    // concurrent INSERT. The request that loses that race gets the session that won.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AttendanceSession generateQRCode(UUID courseId, UUID teacherId, String section, LocalDate date) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> swapActiveSession(courseId, teacherId, section, date));
+            } catch (DataIntegrityViolationException e) {
+                System.out.println("Concurrent QR generation for course " + courseId + " section " + section
+                    + " on " + date + ", returning the session that won");
+                Optional<AttendanceSession> winner = readOnlyTransactionTemplate.execute(status -> sessionRepository
+                    .findByCourseIdAndDateAndSectionAndIsActiveTrue(courseId, date, section)
+                    .stream().findFirst());
+                if (winner.isPresent()) {
+                    return winner.get();
+                }
+                // The winner was itself replaced in the meantime, try the swap again
+                if (attempt >= MAX_SESSION_SWAP_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private AttendanceSession swapActiveSession(UUID courseId, UUID teacherId, String section, LocalDate date) {
         Course course = courseRepository.findById(courseId)
             .orElseThrow(() -> new RuntimeException("Course not found"));
 
         Teacher teacher = teacherRepository.findById(teacherId)
             .orElseThrow(() -> new RuntimeException("Teacher not found"));
 
-        // IMPORTANT: Deactivate any existing active sessions for this course/section/date
-        // This ensures only ONE QR code is active at a time for a class
-        List<AttendanceSession> existingSessions = sessionRepository
-            .findByCourseIdAndDateAndSectionAndIsActiveTrue(courseId, date, section);
-        
-        if (!existingSessions.isEmpty()) {
-            System.out.println("Found " + existingSessions.size() + " active session(s) for " 
+        // Ensures only ONE QR code is active at a time for a class
+        int deactivated = sessionRepository.deactivateActive(courseId, date, section);
+        if (deactivated > 0) {
+            // Leaves the registry (and the sessions' rosters) only if the swap commits
+            activeSessionRegistry.removeFor(courseId, date, section);
+            System.out.println("Deactivated " + deactivated + " active session(s) for "
                 + course.getCode() + " section " + section + " on " + date);
-            System.out.println("Deactivating old sessions to ensure only one QR is active...");
-            
-            for (AttendanceSession oldSession : existingSessions) {
-                oldSession.setIsActive(false);
-                sessionRepository.save(oldSession);
-                System.out.println("Deactivated session: " + oldSession.getQrCode());
-            }
         }
 
-        // Generate unique QR code
-        String qrCode = "ATT-" + courseId + "-" + System.currentTimeMillis();
+        // Random static code identifying the session; scans should use the rotating tokens from getCurrentQrToken
+        String qrCode = "ATT-" + UUID.randomUUID();
 
         AttendanceSession session = new AttendanceSession();
         session.setCourse(course);
@@ -78,64 +168,169 @@ public class AttendanceService {
         session.setExpiresAt(LocalDateTime.now().plusMinutes(5)); // 5-minute expiry
         session.setIsActive(true);
 
+        // Flush so a unique-index conflict surfaces here, inside the swap transaction
+        AttendanceSession saved = sessionRepository.saveAndFlush(session);
         System.out.println("Created NEW active session: " + qrCode);
-        return sessionRepository.save(session);
+        activeSessionRegistry.register(saved);
+        return saved;
+    }
+
+    // Get the current rotating QR token of an active session, only for the teacher who opened it
+    // (the session id travels in clear inside every token, so anyone else could otherwise mint fresh ones)
+    @Transactional(readOnly = true)
+    public QrTokenResponse getCurrentQrToken(UUID sessionId, UUID teacherId) {
+        ActiveSessionRegistry.ActiveSession session = findActiveSessionById(sessionId)
+            .orElseThrow(() -> new RuntimeException("Session not found or inactive"));
+        if (teacherId == null || !teacherId.equals(session.getTeacherId())) {
+            throw new AccessDeniedException("Only the session's teacher can fetch its QR token");
+        }
+
+        if (session.isExpired()) {
+            activeSessionRegistry.remove(sessionId);
+            throw new RuntimeException("Session has expired");
+        }
+
+        String token = qrTokenService.issue(session.getSessionId(), session.getCourseId(), session.getDate(), session.getSection());
+        return new QrTokenResponse(sessionId, token, qrTokenService.nextRotation(), session.getExpiresAt());
     }
 
     // Validate QR code
     public boolean validateQRCode(String qrCode) {
-        Optional<AttendanceSession> session = sessionRepository.findByQrCodeAndIsActiveTrue(qrCode);
+        // A valid signature alone does not mean the session is still open, check it like a scan would
+        if (QrTokenService.isToken(qrCode)) {
+            return verifyQrToken(qrCode)
+                .flatMap(claims -> findActiveSessionById(claims.getSessionId()))
+                .filter(session -> !session.isExpired())
+                .isPresent();
+        }
+        if (!acceptStaticCodes) {
+            return false;
+        }
+
+        Optional<ActiveSessionRegistry.ActiveSession> session = findActiveSession(qrCode);
         
         if (session.isEmpty()) {
             return false;
         }
 
-        AttendanceSession attendanceSession = session.get();
-        
-        // Check if expired
-        if (attendanceSession.isExpired()) {
-            attendanceSession.setIsActive(false);
-            sessionRepository.save(attendanceSession);
+        // Check if expired (the scheduler deactivates the row in the database)
+        if (session.get().isExpired()) {
+            activeSessionRegistry.remove(session.get().getSessionId());
             return false;
         }
 
         return true;
     }
 
-    // Mark attendance via QR code
-    public Attendance markAttendanceViaQR(UUID studentId, String qrCode) {
+    // Mark attendance via QR code (queued for a batched write, no database round trip on a registry hit)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AttendanceReceipt markAttendanceViaQR(UUID studentId, String qrCode) {
+        // Signed tokens are checked in CPU; the session itself is only read on this instance's first scan of it
+        if (QrTokenService.isToken(qrCode)) {
+            QrTokenService.QrClaims claims = verifyQrToken(qrCode)
+                .orElseThrow(() -> new RuntimeException("Invalid or expired QR code"));
+            ActiveSessionRegistry.ActiveSession session = findActiveSessionById(claims.getSessionId())
+                .filter(active -> !active.isExpired())
+                .orElseThrow(() -> new RuntimeException("Invalid or expired QR code"));
+            return submitQrAttendance(studentId, session, qrCode);
+        }
+        if (!acceptStaticCodes) {
+            throw new RuntimeException("Invalid or expired QR code");
+        }
+
         // Validate QR code
-        AttendanceSession session = sessionRepository.findByQrCodeAndIsActiveTrue(qrCode)
+        ActiveSessionRegistry.ActiveSession session = findActiveSession(qrCode)
             .orElseThrow(() -> new RuntimeException("Invalid or expired QR code"));
 
         if (session.isExpired()) {
-            session.setIsActive(false);
-            sessionRepository.save(session);
+            activeSessionRegistry.remove(session.getSessionId());
             throw new RuntimeException("QR code has expired");
         }
 
-        // Check if attendance already marked
-        Optional<Attendance> existing = attendanceRepository.findByStudentIdAndCourseIdAndDateAndSection(
-            studentId, session.getCourse().getId(), session.getDate(), session.getSection()
-        );
+        return submitQrAttendance(studentId, session, qrCode);
+    }
 
-        if (existing.isPresent()) {
-            throw new RuntimeException("Attendance already marked for this session");
+    // Signature and time step are checked in CPU; a session this instance knows has ended or been closed is also refused
+    private Optional<QrTokenService.QrClaims> verifyQrToken(String token) {
+        return qrTokenService.verify(token)
+            .filter(claims -> !activeSessionRegistry.isClosed(claims.getSessionId()))
+            .filter(claims -> activeSessionRegistry.findById(claims.getSessionId())
+                .map(session -> !session.isExpired())
+                .orElse(true));
+    }
+
+    private AttendanceReceipt submitQrAttendance(UUID studentId, ActiveSessionRegistry.ActiveSession session, String qrCode) {
+        // Enrollment and duplicate checks are one bit lookup in the session's roster
+        SessionRosterRegistry.Roster roster = sessionRosters.forSession(session);
+        switch (roster.markPresent(studentId)) {
+            case NOT_ENROLLED:
+                throw new RuntimeException("Student is not enrolled in this course section");
+            case ALREADY_MARKED:
+                throw new RuntimeException("Attendance already marked for this session");
+            default:
+                break;
         }
 
-        // Mark attendance
+        // Build the row up front; the ingestion pipeline writes it with an upsert
+        // so the (student, course, date, section) unique constraint still rejects duplicates
+        UUID courseId = session.getCourseId();
         Attendance attendance = new Attendance();
+        attendance.setId(UUID.randomUUID());
         Student student = new Student();
         student.setId(studentId);
         attendance.setStudent(student);
-        attendance.setCourse(session.getCourse());
+        Course course = new Course();
+        course.setId(courseId);
+        attendance.setCourse(course);
         attendance.setDate(session.getDate());
         attendance.setSection(session.getSection());
         attendance.setStatus(Attendance.AttendanceStatus.PRESENT);
         attendance.setMarkedBy(Attendance.AttendanceMethod.QR);
         attendance.setQrCode(qrCode);
+        attendance.setMarkedAt(LocalDateTime.now());
 
-        return attendanceRepository.save(attendance);
+        try {
+            return ingestionService.submit(attendance);
+        } catch (RuntimeException e) {
+            roster.unmark(studentId);
+            throw e;
+        }
+    }
+
+    // Live present count and absentee list of an active session, answered from the in-memory roster
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public SessionRosterResponse getLiveSessionRoster(UUID sessionId) {
+        ActiveSessionRegistry.ActiveSession session = findActiveSessionById(sessionId)
+            .orElseThrow(() -> new RuntimeException("Session not found or inactive"));
+        SessionRosterRegistry.Roster roster = sessionRosters.forSession(session);
+
+        List<SessionRosterResponse.Absentee> absentees = new ArrayList<>();
+        for (Object[] row : roster.absentees()) {
+            absentees.add(new SessionRosterResponse.Absentee((UUID) row[0], (String) row[1]));
+        }
+        return new SessionRosterResponse(sessionId, roster.enrolledCount(), roster.presentCount(), absentees);
+    }
+
+    // Resolve an active session by id from the in-memory registry, falling back to the database on a miss
+    private Optional<ActiveSessionRegistry.ActiveSession> findActiveSessionById(UUID sessionId) {
+        if (activeSessionRegistry.isClosed(sessionId)) {
+            return Optional.empty();
+        }
+        return activeSessionRegistry.findById(sessionId)
+            .or(() -> sessionRepository.findById(sessionId)
+                .filter(AttendanceSession::getIsActive)
+                .map(activeSessionRegistry::register));
+    }
+
+    // Resolve a QR code from the in-memory registry, falling back to the database on a miss
+    private Optional<ActiveSessionRegistry.ActiveSession> findActiveSession(String qrCode) {
+        Optional<ActiveSessionRegistry.ActiveSession> cached = activeSessionRegistry.findByQrCode(qrCode);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        return sessionRepository.findByQrCodeAndIsActiveTrue(qrCode)
+            .filter(session -> !activeSessionRegistry.isClosed(session.getId()))
+            .map(activeSessionRegistry::register);
     }
 
     // Mark attendance manually
@@ -145,153 +340,214 @@ public class AttendanceService {
             studentId, courseId, date, section
         );
 
+        Attendance attendance;
         if (existing.isPresent()) {
-            Attendance attendance = existing.get();
+            attendance = existing.get();
+            // Still written when only markedBy changes, so a teacher's confirmation is never replaced by a late scan
+            if (attendance.getStatus() == status && attendance.getMarkedBy() == Attendance.AttendanceMethod.MANUAL) {
+                return attendance;
+            }
+            attendance.setStatus(status);
+            attendance.setMarkedBy(Attendance.AttendanceMethod.MANUAL);
+        } else {
+            Course course = courseRepository.findById(courseId)
+                .orElseThrow(() -> new RuntimeException("Course not found"));
+
+            attendance = new Attendance();
+            Student student = new Student();
+            student.setId(studentId);
+            attendance.setStudent(student);
+            attendance.setCourse(course);
+            attendance.setDate(date);
+            attendance.setSection(section);
             attendance.setStatus(status);
-            return attendanceRepository.save(attendance);
+            attendance.setMarkedBy(Attendance.AttendanceMethod.MANUAL);
         }
 
-        Course course = courseRepository.findById(courseId)
-            .orElseThrow(() -> new RuntimeException("Course not found"));
+        // Flush so the counter refresh (plain JDBC in the same transaction) sees the row
+        Attendance saved = attendanceRepository.saveAndFlush(attendance);
+        enrollmentRepository.refreshAttendanceCounters(courseId, List.of(studentId));
+        sessionRosters.attendanceMarked(courseId, date, section, Map.of(studentId, status == Attendance.AttendanceStatus.PRESENT));
+        return saved;
+    }
 
-        Attendance attendance = new Attendance();
-        Student student = new Student();
-        student.setId(studentId);
-        attendance.setStudent(student);
-        attendance.setCourse(course);
-        attendance.setDate(date);
-        attendance.setSection(section);
-        attendance.setStatus(status);
-        attendance.setMarkedBy(Attendance.AttendanceMethod.MANUAL);
+    // Mark attendance for a whole section roster (one resolve query + one upsert statement)
+    public BulkAttendanceResult markAttendanceBulk(UUID courseId, LocalDate date, String section,
+                                                   Map<UUID, Attendance.AttendanceStatus> statuses) {
+        if (!courseRepository.existsById(courseId)) {
+            throw new RuntimeException("Course not found");
+        }
 
-        return attendanceRepository.save(attendance);
+        // Ids may be user ids or student ids; user id matches win, like the single-student endpoint
+        Map<UUID, UUID> studentIdByRequestedId = new HashMap<>();
+        List<Object[]> idPairs = statuses.isEmpty() ? List.of() : studentRepository.findIdPairsByIdOrUserIdIn(statuses.keySet());
+        for (Object[] row : idPairs) {
+            if (statuses.containsKey((UUID) row[1])) {
+                studentIdByRequestedId.put((UUID) row[1], (UUID) row[0]);
+            }
+        }
+        for (Object[] row : idPairs) {
+            if (statuses.containsKey((UUID) row[0])) {
+                studentIdByRequestedId.putIfAbsent((UUID) row[0], (UUID) row[0]);
+            }
+        }
+
+        Map<UUID, Attendance.AttendanceStatus> statusesByStudentId = new LinkedHashMap<>();
+        List<UUID> unresolved = new ArrayList<>();
+        statuses.forEach((requestedId, status) -> {
+            UUID resolvedId = studentIdByRequestedId.get(requestedId);
+            if (resolvedId == null || status == null) {
+                unresolved.add(requestedId);
+            } else {
+                statusesByStudentId.put(resolvedId, status);
+            }
+        });
+
+        int changed = attendanceRepository.upsertManualStatuses(courseId, date, section, statusesByStudentId);
+        if (changed > 0) {
+            enrollmentRepository.refreshAttendanceCounters(courseId, statusesByStudentId.keySet());
+
+            Map<UUID, Boolean> presentByStudentId = new HashMap<>();
+            statusesByStudentId.forEach((studentId, status) ->
+                presentByStudentId.put(studentId, status == Attendance.AttendanceStatus.PRESENT));
+            sessionRosters.attendanceMarked(courseId, date, section, presentByStudentId);
+        }
+        return new BulkAttendanceResult(statuses.size(), changed, unresolved);
     }
 
     // Get student's attendance records
+    @Transactional(readOnly = true)
     public List<Attendance> getStudentAttendance(UUID studentId) {
         return attendanceRepository.findByStudentId(studentId);
     }
 
+    // Get one keyset page of a student's attendance records, newest first
+    @Transactional(readOnly = true)
+    public PageResponse<Attendance> getStudentAttendancePage(UUID studentId, String cursor, Integer limit) {
+        int pageSize = PageResponse.clampLimit(limit);
+        PageRequest fetch = PageRequest.of(0, pageSize + 1);
+
+        List<Attendance> rows;
+        if (cursor == null) {
+            rows = attendanceRepository.findFirstPageByStudentId(studentId, fetch);
+        } else {
+            PageCursor after = PageCursor.decode(cursor);
+            rows = attendanceRepository.findPageByStudentIdAfter(studentId, after.keyAsDate(), after.getId(), fetch);
+        }
+        return PageResponse.of(rows, pageSize, a -> PageCursor.encode(a.getDate(), a.getId()));
+    }
+
     // Get student's attendance for a specific course
+    @Transactional(readOnly = true)
     public List<Attendance> getStudentCourseAttendance(UUID studentId, UUID courseId) {
         return attendanceRepository.findByStudentIdAndCourseId(studentId, courseId);
     }
 
     // Get attendance for a course on a specific date
+    @Transactional(readOnly = true)
     public List<Attendance> getCourseAttendanceByDate(UUID courseId, LocalDate date, String section) {
         return attendanceRepository.findByCourseIdAndDateAndSection(courseId, date, section);
     }
 
-    // Get student attendance statistics
-    public AttendanceStatistics getStudentAttendanceStats(UUID studentId) {
-        System.out.println("=== AttendanceService.getStudentAttendanceStats ===");
-        System.out.println("Looking up attendance for student_id: " + studentId);
-        
-        // First, let's see all attendance records for this student
-        List<Attendance> allAttendance = attendanceRepository.findByStudentId(studentId);
-        System.out.println("Found " + allAttendance.size() + " attendance records");
-        for (Attendance att : allAttendance) {
-            System.out.println("  - Course: " + att.getCourse().getName() + ", Date: " + att.getDate() + ", Status: " + att.getStatus());
-        }
-        
-        Long totalClasses = attendanceRepository.countTotalByStudentId(studentId);
-        Long presentClasses = attendanceRepository.countPresentByStudentId(studentId);
-        
-        System.out.println("Count queries result:");
-        System.out.println("  - Total classes: " + totalClasses);
-        System.out.println("  - Present classes: " + presentClasses);
-
-        AttendanceStatistics stats = new AttendanceStatistics();
-        stats.setTotalClasses(totalClasses != null ? totalClasses : 0L);
-        stats.setPresentClasses(presentClasses != null ? presentClasses : 0L);
-        
-        if (totalClasses != null && totalClasses > 0) {
-            stats.setPercentage((double) presentClasses / totalClasses * 100);
-        } else {
-            stats.setPercentage(0.0);
-        }
+    // Get attendance for a course on a specific date as DTOs, selected without loading entities
+    @Transactional(readOnly = true)
+    public List<AttendanceDTO> getCourseAttendanceDtosByDate(UUID courseId, LocalDate date, String section) {
+        return attendanceRepository.findDtosByCourseIdAndDateAndSection(courseId, date, section);
+    }
 
-        return stats;
+    // Get student attendance statistics (summed from the per-enrollment counters)
+    @Transactional(readOnly = true)
+    public AttendanceStatistics getStudentAttendanceStats(UUID studentId) {
+        Object[] counters = enrollmentRepository.sumAttendanceCountersByStudentId(studentId).get(0);
+        return toStatistics(((Number) counters[0]).longValue(), ((Number) counters[1]).longValue());
     }
 
-    // Get student attendance statistics for a specific course
+    // Get student attendance statistics for a specific course (one enrollment row)
+    @Transactional(readOnly = true)
     public AttendanceStatistics getStudentCourseAttendanceStats(UUID studentId, UUID courseId) {
+        List<Object[]> counters = enrollmentRepository.findAttendanceCountersByStudentIdAndCourseId(studentId, courseId);
+
+        if (!counters.isEmpty()) {
+            Object[] row = counters.get(0);
+            long totalClasses = row[0] != null ? ((Number) row[0]).longValue() : 0L;
+            long presentClasses = row[1] != null ? ((Number) row[1]).longValue() : 0L;
+            return toStatistics(totalClasses, presentClasses);
+        }
+
+        // Not enrolled: nothing maintains counters, so count the attendance rows directly
         Long totalClasses = attendanceRepository.countTotalByStudentIdAndCourseId(studentId, courseId);
         Long presentClasses = attendanceRepository.countPresentByStudentIdAndCourseId(studentId, courseId);
+        return toStatistics(totalClasses != null ? totalClasses : 0L, presentClasses != null ? presentClasses : 0L);
+    }
 
+    private AttendanceStatistics toStatistics(long totalClasses, long presentClasses) {
         AttendanceStatistics stats = new AttendanceStatistics();
-        stats.setTotalClasses(totalClasses != null ? totalClasses : 0L);
-        stats.setPresentClasses(presentClasses != null ? presentClasses : 0L);
-        
-        if (totalClasses != null && totalClasses > 0) {
-            stats.setPercentage((double) presentClasses / totalClasses * 100);
-        } else {
-            stats.setPercentage(0.0);
-        }
-
+        stats.setTotalClasses(totalClasses);
+        stats.setPresentClasses(presentClasses);
+        stats.setPercentage(totalClasses > 0 ? (double) presentClasses / totalClasses * 100 : 0.0);
         return stats;
     }
 
+    // Rebuild the per-enrollment attendance counters from the attendance table (nightly reconciliation)
+    @Scheduled(cron = "${attendance.counters.reconcile-cron:0 30 3 * * *}")
+    public int reconcileAttendanceCounters() {
+        int corrected = enrollmentRepository.rebuildAttendanceCounters();
+        System.out.println("Attendance counter reconciliation corrected " + corrected + " enrollment(s)");
+        return corrected;
+    }
+
+    // Counters written before they were maintained on write are brought in line once at startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileAttendanceCountersOnStartup() {
+        if (reconcileCountersOnStartup) {
+            reconcileAttendanceCounters();
+        }
+    }
+
     // Get student's course-wise attendance statistics
+    @Transactional(readOnly = true)
     public List<CourseAttendanceStatistics> getStudentCourseWiseAttendance(UUID studentId) {
-        System.out.println("=== AttendanceService.getStudentCourseWiseAttendance ===");
-        System.out.println("Student ID: " + studentId);
-        
-        // Get all attendance records for this student
-        List<Attendance> allAttendance = attendanceRepository.findByStudentId(studentId);
-        System.out.println("Total attendance records: " + allAttendance.size());
-        
-        // Group by course and calculate stats
-        Map<Course, List<Attendance>> attendanceByCourse = allAttendance.stream()
-            .collect(Collectors.groupingBy(Attendance::getCourse));
-        
-        System.out.println("Number of courses: " + attendanceByCourse.size());
-        
+        // Recent 10 records per course, computed by the database with ROW_NUMBER() per course
+        Map<UUID, List<RecentAttendanceRecord>> recentByCourse = new HashMap<>();
+        for (Object[] row : attendanceRepository.findRecentByStudentIdPerCourse(studentId, RECENT_RECORDS_PER_COURSE)) {
+            RecentAttendanceRecord record = new RecentAttendanceRecord();
+            record.setDate(toLocalDate(row[1]));
+            record.setStatus((String) row[2]);
+            recentByCourse.computeIfAbsent((UUID) row[0], id -> new ArrayList<>()).add(record);
+        }
+
+        // Per-course totals, grouped by the database
         List<CourseAttendanceStatistics> courseStatsList = new ArrayList<>();
-        
-        for (Map.Entry<Course, List<Attendance>> entry : attendanceByCourse.entrySet()) {
-            Course course = entry.getKey();
-            List<Attendance> courseAttendance = entry.getValue();
-            
-            long totalClasses = courseAttendance.size();
-            long presentClasses = courseAttendance.stream()
-                .filter(a -> a.getStatus() == Attendance.AttendanceStatus.PRESENT)
-                .count();
-            
-            double percentage = totalClasses > 0 ? (double) presentClasses / totalClasses * 100 : 0.0;
-            
+        for (Object[] row : attendanceRepository.getCourseTotalsByStudentId(studentId)) {
+            UUID courseId = (UUID) row[0];
+            long totalClasses = ((Number) row[3]).longValue();
+            long presentClasses = row[4] != null ? ((Number) row[4]).longValue() : 0L;
+
             CourseAttendanceStatistics stats = new CourseAttendanceStatistics();
-            stats.setCourseId(course.getId());
-            stats.setCourseCode(course.getCode());
-            stats.setCourseName(course.getName());
+            stats.setCourseId(courseId);
+            stats.setCourseCode((String) row[1]);
+            stats.setCourseName((String) row[2]);
             stats.setTotalClasses(totalClasses);
             stats.setPresentClasses(presentClasses);
-            stats.setPercentage(percentage);
-            
-            // Get recent 10 attendance records sorted by date descending
-            List<RecentAttendanceRecord> recentRecords = courseAttendance.stream()
-                .sorted(Comparator.comparing(Attendance::getDate).reversed())
-                .limit(10)
-                .map(a -> {
-                    RecentAttendanceRecord record = new RecentAttendanceRecord();
-                    record.setDate(a.getDate());
-                    record.setStatus(a.getStatus().name());
-                    return record;
-                })
-                .collect(Collectors.toList());
-            
-            stats.setRecentAttendance(recentRecords);
-            
+            stats.setPercentage(totalClasses > 0 ? (double) presentClasses / totalClasses * 100 : 0.0);
+            stats.setRecentAttendance(recentByCourse.getOrDefault(courseId, new ArrayList<>()));
+
             courseStatsList.add(stats);
-            
-            System.out.println("  - " + course.getCode() + " (" + course.getName() + "): " 
-                + presentClasses + "/" + totalClasses + " = " + String.format("%.1f", percentage) + "%");
         }
-        
+
         return courseStatsList;
     }
 
+    // Native queries may hand back java.sql.Date for DATE columns
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof java.sql.Date sqlDate) {
+            return sqlDate.toLocalDate();
+        }
+        return (LocalDate) value;
+    }
+
     // Get attendance statistics for a course session
+    @Transactional(readOnly = true)
     public AttendanceStatistics getCourseSessionStats(UUID courseId, LocalDate date, String section) {
         List<Attendance> attendanceList = attendanceRepository.findByCourseIdAndDateAndSection(courseId, date, section);
         Long presentCount = attendanceRepository.countPresentByCourseIdAndDateAndSection(courseId, date, section);
@@ -310,19 +566,38 @@ public class AttendanceService {
     }
 
     // Deactivate expired QR sessions (scheduled task - runs every minute)
+    // Runs outside a transaction so queued scans are flushed (in their own transaction) before absentees are filled in
     @Scheduled(fixedRate = 60000)
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void deactivateExpiredSessions() {
-        List<AttendanceSession> expiredSessions = sessionRepository.findByExpiresAtBefore(LocalDateTime.now());
-        
-        for (AttendanceSession session : expiredSessions) {
-            if (session.getIsActive()) {
-                session.setIsActive(false);
-                sessionRepository.save(session);
-            }
+        LocalDateTime now = LocalDateTime.now();
+        activeSessionRegistry.removeExpired();
+
+        List<UUID> expiring = sessionRepository.findActiveIdsExpiredBefore(now);
+        if (expiring.isEmpty()) {
+            expiredSessionsPerRun.record(0);
+            return;
         }
+
+        ingestionService.flushNow();
+        transactionTemplate.executeWithoutResult(status -> {
+            // Single UPDATE over still-active sessions only, instead of loading every session that ever expired
+            int deactivated = sessionRepository.deactivateExpired(now);
+            expiredSessionsPerRun.record(deactivated);
+            int absentees = markAbsentees(expiring);
+            System.out.println("Deactivated " + deactivated + " expired attendance sessions, marked " + absentees + " absentees");
+        });
+    }
+
+    // Mark enrolled students without a row as ABSENT/AUTO for the given sessions, then refresh their counters
+    private int markAbsentees(List<UUID> sessionIds) {
+        Map<UUID, List<UUID>> absenteesByCourse = attendanceRepository.insertAbsentees(sessionIds);
+        absenteesByCourse.forEach(enrollmentRepository::refreshAttendanceCounters);
+        return absenteesByCourse.values().stream().mapToInt(List::size).sum();
     }
 
     // Get active sessions for a teacher
+    @Transactional(readOnly = true)
     public List<AttendanceSession> getTeacherActiveSessions(UUID teacherId) {
         return sessionRepository.findByTeacherId(teacherId);
     }
@@ -345,19 +620,41 @@ public class AttendanceService {
                 // Mark as inactive if expired
                 session.setIsActive(false);
                 sessionRepository.save(session);
+                activeSessionRegistry.remove(session.getId());
             }
         }
         
         return null;
     }
 
-    // Close/Invalidate an attendance session
+    // Close/Invalidate an attendance session and mark every enrolled student who did not scan as absent
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void closeAttendanceSession(UUID sessionId) {
-        AttendanceSession session = sessionRepository.findById(sessionId)
-            .orElseThrow(() -> new RuntimeException("Attendance session not found"));
-        
-        session.setIsActive(false);
-        sessionRepository.save(session);
+        if (!sessionRepository.existsById(sessionId)) {
+            throw new RuntimeException("Attendance session not found");
+        }
+        // Refuse further scans right away, also from readers that still see the row active until the UPDATE commits
+        activeSessionRegistry.close(sessionId);
+
+        try {
+            // Scans already accepted for this session must land before the gaps are filled with absences
+            ingestionService.flushNow();
+
+            transactionTemplate.executeWithoutResult(status -> {
+                AttendanceSession session = sessionRepository.findById(sessionId)
+                    .orElseThrow(() -> new RuntimeException("Attendance session not found"));
+                session.setIsActive(false);
+                sessionRepository.saveAndFlush(session);
+                activeSessionRegistry.removeClosed(sessionId);
+
+                int absentees = markAbsentees(List.of(sessionId));
+                System.out.println("Closed session " + sessionId + ", marked " + absentees + " absentees");
+            });
+        } catch (RuntimeException e) {
+            // Still active in the database, so let it accept scans again
+            activeSessionRegistry.reopen(sessionId);
+            throw e;
+        }
     }
 
     // Inner class for attendance statistics
@@ -1,13 +1,14 @@
 package com.classechobackend.service;
 
 import java.math.BigDecimal;
-import java.util.UUID;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.classechobackend.dto.AuthResponse;
 import com.classechobackend.exception.BadRequestException;
+import com.classechobackend.exception.SupabaseUnavailableException;
 import com.classechobackend.model.Student;
 import com.classechobackend.model.Teacher;
 import com.classechobackend.model.User;
@@ -17,6 +18,7 @@ import com.classechobackend.repository.UserRepository;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Service
 public class AuthenticationService {
@@ -27,6 +29,9 @@ public class AuthenticationService {
     @Autowired
     private JwtService jwtService;
 
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
     @Autowired
     private UserRepository userRepository;
 
@@ -36,14 +41,17 @@ public class AuthenticationService {
     @Autowired
     private TeacherRepository teacherRepository;
 
+    @Autowired
+    private IdentityResolver identityResolver;
+
     /**
      * Verify Supabase token and generate our own JWT tokens
      * @param supabaseToken The Supabase access token
      * @return AuthResponse with access and refresh tokens
      */
     public Mono<AuthResponse> authenticateWithSupabase(String supabaseToken) {
-        return supabaseAuthService.getUser(supabaseToken)
-                .map(userNode -> {
+        return supabaseAuthService.resolveUser(supabaseToken)
+                .flatMap(userNode -> Mono.fromCallable(() -> {
                     // Extract user information from Supabase response
                     String supabaseUserId = userNode.get("id").asText();
                     String email = userNode.get("email").asText();
@@ -72,16 +80,16 @@ public class AuthenticationService {
                                 return newUser;
                             });
 
-                    // Generate our own JWT tokens using our database user ID
+                    // Generate our own JWT tokens using our database user ID, with the profile id embedded
+                    Optional<IdentityResolver.Identity> identity = identityResolver.resolve(user.getId(), user.getRole());
                     String accessToken = jwtService.generateAccessToken(
                             user.getId().toString(), 
                             user.getEmail(), 
-                            user.getRole()
-                    );
-                    String refreshToken = jwtService.generateRefreshToken(
-                            user.getId().toString(), 
-                            user.getEmail()
+                            user.getRole(),
+                            identity.map(IdentityResolver.Identity::getStudentId).orElse(null),
+                            identity.map(IdentityResolver.Identity::getTeacherId).orElse(null)
                     );
+                    String refreshToken = refreshTokenService.issue(user.getId(), user.getEmail());
 
                     // Build response
                     AuthResponse.UserInfo userInfo = new AuthResponse.UserInfo(
@@ -97,53 +105,56 @@ public class AuthenticationService {
                             userInfo
                     );
                 })
-                .onErrorMap(e -> new BadRequestException("Invalid Supabase token: " + e.getMessage()));
+                // Blocking JPA work runs off the Netty event loop
+                .subscribeOn(Schedulers.boundedElastic()))
+                // Supabase being down is not the caller's fault, keep it a 503
+                .onErrorMap(e -> !(e instanceof SupabaseUnavailableException),
+                        e -> new BadRequestException("Invalid Supabase token: " + e.getMessage()));
     }
 
     /**
-     * Refresh access token using refresh token
+     * Rotate a refresh token and issue a new access token.
+     * User details come from the user loaded during rotation (second-level cached), so a changed
+     * name, email or role reaches the new tokens.
      * @param refreshToken The refresh token
-     * @return AuthResponse with new access token
+     * @return AuthResponse with new access and refresh tokens
      */
     public Mono<AuthResponse> refreshAccessToken(String refreshToken) {
         return Mono.fromCallable(() -> {
-            if (!jwtService.validateToken(refreshToken)) {
-                throw new BadRequestException("Invalid or expired refresh token");
-            }
-
-            String tokenType = jwtService.extractTokenType(refreshToken);
-            if (!"refresh".equals(tokenType)) {
-                throw new BadRequestException("Token is not a refresh token");
-            }
-
-            // Extract user info from refresh token
-            String userId = jwtService.extractUserId(refreshToken);
-            String email = jwtService.extractEmail(refreshToken);
+            RefreshTokenService.Rotation rotation = refreshTokenService.rotate(refreshToken);
+            User user = rotation.getUser();
 
-            // Get user from database to get the latest info
-            User user = userRepository.findById(UUID.fromString(userId))
-                    .orElseThrow(() -> new BadRequestException("User not found"));
-
-            // Generate new access token
+            // Generate new access token from the current user; the profile id comes from the identity cache
+            Optional<IdentityResolver.Identity> identity = identityResolver.resolve(user.getId(), user.getRole());
             String newAccessToken = jwtService.generateAccessToken(
-                    user.getId().toString(), 
-                    user.getEmail(), 
-                    user.getRole()
+                    user.getId().toString(),
+                    user.getEmail(),
+                    user.getRole(),
+                    identity.map(IdentityResolver.Identity::getStudentId).orElse(null),
+                    identity.map(IdentityResolver.Identity::getTeacherId).orElse(null)
             );
 
             AuthResponse.UserInfo userInfo = new AuthResponse.UserInfo(
-                    user.getId().toString(), 
+                    user.getId().toString(),
                     user.getEmail(),
                     user.getName(),
                     user.getRole()
             );
             return new AuthResponse(
                     newAccessToken,
-                    refreshToken, // Return same refresh token
+                    rotation.getRefreshToken(),
                     jwtService.getAccessTokenExpiration() / 1000,
                     userInfo
             );
-        });
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Revoke a refresh token
+     * @param refreshToken The refresh token to revoke
+     */
+    public void logout(String refreshToken) {
+        refreshTokenService.revoke(refreshToken);
     }
 
     /**
@@ -152,11 +163,9 @@ public class AuthenticationService {
      * @return true if valid, false otherwise
      */
     public boolean validateAccessToken(String accessToken) {
-        if (!jwtService.validateToken(accessToken)) {
-            return false;
-        }
-        String tokenType = jwtService.extractTokenType(accessToken);
-        return "access".equals(tokenType);
+        return jwtService.verify(accessToken)
+                .map(principal -> "access".equals(principal.getType()))
+                .orElse(false);
     }
 
     /**
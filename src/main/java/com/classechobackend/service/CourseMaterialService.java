@@ -1,10 +1,13 @@
 package com.classechobackend.service;
 
+import com.classechobackend.dto.PageCursor;
+import com.classechobackend.dto.PageResponse;
 import com.classechobackend.model.CourseMaterial;
 import com.classechobackend.model.Course;
 import com.classechobackend.repository.CourseMaterialRepository;
 import com.classechobackend.repository.CourseRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -39,16 +42,19 @@ public class CourseMaterialService {
     }
 
     // Get all materials for a course
+    @Transactional(readOnly = true)
     public List<CourseMaterial> getCourseMaterials(UUID courseId) {
         return materialRepository.findByCourseIdOrderByUploadedAtDesc(courseId);
     }
 
     // Get materials by type
+    @Transactional(readOnly = true)
     public List<CourseMaterial> getMaterialsByType(UUID courseId, CourseMaterial.MaterialType type) {
         return materialRepository.findByCourseIdAndType(courseId, type);
     }
 
     // Get material by ID
+    @Transactional(readOnly = true)
     public CourseMaterial getMaterialById(UUID materialId) {
         return materialRepository.findById(materialId)
             .orElseThrow(() -> new RuntimeException("Material not found"));
@@ -74,12 +80,30 @@ public class CourseMaterialService {
     }
 
     // Get material count for a course
+    @Transactional(readOnly = true)
     public Long getMaterialCount(UUID courseId) {
         return materialRepository.countByCourseId(courseId);
     }
 
     // Get all materials
+    @Transactional(readOnly = true)
     public List<CourseMaterial> getAllMaterials() {
         return materialRepository.findAll();
     }
+
+    // Get one keyset page of all materials, newest first
+    @Transactional(readOnly = true)
+    public PageResponse<CourseMaterial> getMaterialsPage(String cursor, Integer limit) {
+        int pageSize = PageResponse.clampLimit(limit);
+        PageRequest fetch = PageRequest.of(0, pageSize + 1);
+
+        List<CourseMaterial> rows;
+        if (cursor == null) {
+            rows = materialRepository.findFirstPage(fetch);
+        } else {
+            PageCursor after = PageCursor.decode(cursor);
+            rows = materialRepository.findPageAfter(after.keyAsDateTime(), after.getId(), fetch);
+        }
+        return PageResponse.of(rows, pageSize, m -> PageCursor.encode(m.getUploadedAt(), m.getId()));
+    }
 }
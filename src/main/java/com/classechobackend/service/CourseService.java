@@ -1,11 +1,15 @@
 package com.classechobackend.service;
 
+import com.classechobackend.dto.CourseEnrollmentDTO;
+import com.classechobackend.dto.PageCursor;
+import com.classechobackend.dto.PageResponse;
 import com.classechobackend.model.Course;
 import com.classechobackend.model.CourseEnrollment;
 import com.classechobackend.model.Student;
 import com.classechobackend.repository.CourseEnrollmentRepository;
 import com.classechobackend.repository.CourseRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,6 +27,9 @@ public class CourseService {
     @Autowired
     private CourseEnrollmentRepository enrollmentRepository;
 
+    @Autowired
+    private SessionRosterRegistry sessionRosters;
+
     // Create a new course
     public Course createCourse(Course course) {
         // Check if course code already exists
@@ -33,26 +40,31 @@ public class CourseService {
     }
 
     // Get course by ID
+    @Transactional(readOnly = true)
     public Optional<Course> getCourseById(UUID courseId) {
         return courseRepository.findById(courseId);
     }
 
     // Get course by code
+    @Transactional(readOnly = true)
     public Optional<Course> getCourseByCode(String code) {
         return courseRepository.findByCode(code);
     }
 
     // Get all courses
+    @Transactional(readOnly = true)
     public List<Course> getAllCourses() {
         return courseRepository.findAll();
     }
 
     // Get courses by teacher ID
+    @Transactional(readOnly = true)
     public List<Course> getCoursesByTeacherId(UUID teacherId) {
         return courseRepository.findByTeacherId(teacherId);
     }
 
     // Get courses by semester
+    @Transactional(readOnly = true)
     public List<Course> getCoursesBySemester(String semester) {
         return courseRepository.findBySemester(semester);
     }
@@ -94,25 +106,53 @@ public class CourseService {
         enrollment.setCourse(course);
         enrollment.setSection(section);
 
-        return enrollmentRepository.save(enrollment);
+        CourseEnrollment saved = enrollmentRepository.save(enrollment);
+        sessionRosters.enrollmentChanged(courseId);
+        return saved;
     }
 
     // Get student's enrolled courses
+    @Transactional(readOnly = true)
     public List<CourseEnrollment> getStudentEnrollments(UUID studentId) {
         return enrollmentRepository.findByStudentId(studentId);
     }
 
+    // Get student's enrolled courses as DTOs, selected without loading entities
+    @Transactional(readOnly = true)
+    public List<CourseEnrollmentDTO> getStudentEnrollmentDtos(UUID studentId) {
+        return enrollmentRepository.findDtosByStudentId(studentId);
+    }
+
     // Get course enrollments
+    @Transactional(readOnly = true)
     public List<CourseEnrollment> getCourseEnrollments(UUID courseId) {
         return enrollmentRepository.findByCourseId(courseId);
     }
 
+    // Get one keyset page of a course's enrollments, in enrollment order
+    @Transactional(readOnly = true)
+    public PageResponse<CourseEnrollment> getCourseEnrollmentsPage(UUID courseId, String cursor, Integer limit) {
+        int pageSize = PageResponse.clampLimit(limit);
+        PageRequest fetch = PageRequest.of(0, pageSize + 1);
+
+        List<CourseEnrollment> rows;
+        if (cursor == null) {
+            rows = enrollmentRepository.findFirstPageByCourseId(courseId, fetch);
+        } else {
+            PageCursor after = PageCursor.decode(cursor);
+            rows = enrollmentRepository.findPageByCourseIdAfter(courseId, after.keyAsDateTime(), after.getId(), fetch);
+        }
+        return PageResponse.of(rows, pageSize, e -> PageCursor.encode(e.getEnrolledAt(), e.getId()));
+    }
+
     // Get enrollments by section
+    @Transactional(readOnly = true)
     public List<CourseEnrollment> getEnrollmentsBySection(UUID courseId, String section) {
         return enrollmentRepository.findByCourseIdAndSection(courseId, section);
     }
 
     // Get course statistics
+    @Transactional(readOnly = true)
     public CourseStatistics getCourseStatistics(UUID courseId) {
         Long totalStudents = enrollmentRepository.countByCourseId(courseId);
         Double averagePercentage = enrollmentRepository.getAveragePercentageByCourseId(courseId);
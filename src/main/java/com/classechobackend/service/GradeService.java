@@ -1,15 +1,21 @@
 package com.classechobackend.service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.classechobackend.dto.GradeDTO;
+import com.classechobackend.dto.PageCursor;
+import com.classechobackend.dto.PageResponse;
 import com.classechobackend.model.Course;
 import com.classechobackend.model.Grade;
 import com.classechobackend.model.Student;
@@ -82,44 +88,74 @@ public class GradeService {
     }
 
     // Get all grades for a student
+    @Transactional(readOnly = true)
     public List<Grade> getStudentGrades(UUID studentId) {
         return gradeRepository.findByStudentId(studentId);
     }
 
+    // Get all grades for a student as DTOs, selected without loading entities
+    @Transactional(readOnly = true)
+    public List<GradeDTO> getStudentGradeDtos(UUID studentId) {
+        return gradeRepository.findDtosByStudentId(studentId);
+    }
+
     // Get grades for a student in a specific course
+    @Transactional(readOnly = true)
     public List<Grade> getStudentCourseGrades(UUID studentId, UUID courseId) {
         return gradeRepository.findByStudentIdAndCourseId(studentId, courseId);
     }
 
     // Get all grades for a course
+    @Transactional(readOnly = true)
     public List<Grade> getCourseGrades(UUID courseId) {
         return gradeRepository.findByCourseId(courseId);
     }
 
+    // Get one keyset page of a course's grades, newest first
+    @Transactional(readOnly = true)
+    public PageResponse<Grade> getCourseGradesPage(UUID courseId, String cursor, Integer limit) {
+        int pageSize = PageResponse.clampLimit(limit);
+        PageRequest fetch = PageRequest.of(0, pageSize + 1);
+
+        List<Grade> rows;
+        if (cursor == null) {
+            rows = gradeRepository.findFirstPageByCourseId(courseId, fetch);
+        } else {
+            PageCursor after = PageCursor.decode(cursor);
+            rows = gradeRepository.findPageByCourseIdAfter(courseId, after.keyAsDateTime(), after.getId(), fetch);
+        }
+        return PageResponse.of(rows, pageSize, g -> PageCursor.encode(g.getCreatedAt(), g.getId()));
+    }
+
     // Get grades by assessment type
+    @Transactional(readOnly = true)
     public List<Grade> getGradesByAssessmentType(UUID studentId, UUID courseId, Grade.AssessmentType assessmentType) {
         return gradeRepository.findByStudentIdAndCourseIdAndAssessmentType(studentId, courseId, assessmentType);
     }
 
     // Calculate average grade for a student
+    @Transactional(readOnly = true)
     public Double calculateStudentAverage(UUID studentId) {
         Double average = gradeRepository.getAveragePercentageByStudentId(studentId);
         return average != null ? average : 0.0;
     }
 
     // Calculate average grade for a student in a course
+    @Transactional(readOnly = true)
     public Double calculateStudentCourseAverage(UUID studentId, UUID courseId) {
         Double average = gradeRepository.getAveragePercentageByStudentIdAndCourseId(studentId, courseId);
         return average != null ? average : 0.0;
     }
 
     // Calculate average grade for a course
+    @Transactional(readOnly = true)
     public Double calculateCourseAverage(UUID courseId) {
         Double average = gradeRepository.getAveragePercentageByCourseId(courseId);
         return average != null ? average : 0.0;
     }
 
     // Get grade distribution for a course
+    @Transactional(readOnly = true)
     public Map<String, Long> getGradeDistribution(UUID courseId) {
         List<Object[]> distribution = gradeRepository.getGradeDistributionByCourseId(courseId);
         Map<String, Long> result = new HashMap<>();
@@ -134,6 +170,7 @@ public class GradeService {
     }
 
     // Calculate GPA (4.0 scale)
+    @Transactional(readOnly = true)
     public Double calculateGPA(UUID studentId) {
         List<Grade> grades = gradeRepository.findByStudentId(studentId);
 
@@ -205,22 +242,72 @@ public class GradeService {
         }
     }
 
-    // Get performance breakdown by assessment type
+    // Get performance breakdown by assessment type (one grouped query)
+    @Transactional(readOnly = true)
     public Map<String, Double> getPerformanceBreakdown(UUID studentId, UUID courseId) {
         Map<String, Double> breakdown = new HashMap<>();
 
-        for (Grade.AssessmentType type : Grade.AssessmentType.values()) {
-            List<Grade> grades = gradeRepository.findByStudentIdAndCourseIdAndAssessmentType(studentId, courseId, type);
-
-            if (!grades.isEmpty()) {
-                double total = 0.0;
-                for (Grade grade : grades) {
-                    total += grade.getPercentage();
-                }
-                breakdown.put(type.toString(), total / grades.size());
-            }
+        for (Object[] row : gradeRepository.getPerformanceBreakdown(studentId, courseId)) {
+            breakdown.put(row[0].toString(), ((Number) row[1]).doubleValue());
         }
 
         return breakdown;
     }
+
+    // Get performance breakdown by assessment type for every student in a course (one grouped query)
+    @Transactional(readOnly = true)
+    public List<StudentPerformanceBreakdown> getCoursePerformanceBreakdown(UUID courseId) {
+        Map<UUID, StudentPerformanceBreakdown> byStudent = new LinkedHashMap<>();
+
+        for (Object[] row : gradeRepository.getPerformanceBreakdownByCourseId(courseId)) {
+            UUID studentId = (UUID) row[0];
+            StudentPerformanceBreakdown student = byStudent.computeIfAbsent(studentId, id -> {
+                StudentPerformanceBreakdown created = new StudentPerformanceBreakdown();
+                created.setStudentId(id);
+                created.setRollNo((String) row[1]);
+                created.setBreakdown(new ArrayList<>());
+                return created;
+            });
+
+            AssessmentTypeBreakdown type = new AssessmentTypeBreakdown();
+            type.setAssessmentType(row[2].toString());
+            type.setAveragePercentage(((Number) row[3]).doubleValue());
+            type.setCount(((Number) row[4]).longValue());
+            student.getBreakdown().add(type);
+        }
+
+        return new ArrayList<>(byStudent.values());
+    }
+
+    // Inner class for one assessment type's average in a breakdown
+    public static class AssessmentTypeBreakdown {
+        private String assessmentType;
+        private Double averagePercentage;
+        private Long count;
+
+        public String getAssessmentType() { return assessmentType; }
+        public void setAssessmentType(String assessmentType) { this.assessmentType = assessmentType; }
+
+        public Double getAveragePercentage() { return averagePercentage; }
+        public void setAveragePercentage(Double averagePercentage) { this.averagePercentage = averagePercentage; }
+
+        public Long getCount() { return count; }
+        public void setCount(Long count) { this.count = count; }
+    }
+
+    // Inner class for a student's breakdown in the course-wide view
+    public static class StudentPerformanceBreakdown {
+        private UUID studentId;
+        private String rollNo;
+        private List<AssessmentTypeBreakdown> breakdown;
+
+        public UUID getStudentId() { return studentId; }
+        public void setStudentId(UUID studentId) { this.studentId = studentId; }
+
+        public String getRollNo() { return rollNo; }
+        public void setRollNo(String rollNo) { this.rollNo = rollNo; }
+
+        public List<AssessmentTypeBreakdown> getBreakdown() { return breakdown; }
+        public void setBreakdown(List<AssessmentTypeBreakdown> breakdown) { this.breakdown = breakdown; }
+    }
 }
@@ -0,0 +1,147 @@
+package com.classechobackend.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.classechobackend.repository.StudentRepository;
+import com.classechobackend.repository.TeacherRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Maps a user id to the student or teacher profile id behind it.
+ * Resolved once per request by the JWT filter and cached, so /me endpoints
+ * do not each run their own findByUserId. Missing profiles are not cached,
+ * which lets a profile created after first login resolve on the next request.
+ */
+@Component
+public class IdentityResolver {
+
+    private final StudentRepository studentRepository;
+    private final TeacherRepository teacherRepository;
+    private final Cache<UUID, Identity> identities;
+
+    public IdentityResolver(
+            StudentRepository studentRepository,
+            TeacherRepository teacherRepository,
+            MeterRegistry meterRegistry,
+            @Value("${identity.cache.max-size:10000}") long maxSize,
+            @Value("${identity.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.studentRepository = studentRepository;
+        this.teacherRepository = teacherRepository;
+        this.identities = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                // Bounds how long a profile deleted on another instance keeps resolving here
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, identities, "identities");
+    }
+
+    /**
+     * Resolve the profile of an authenticated user
+     * @param userId The user id from the access token
+     * @param role The role from the access token, decides which profile table is consulted
+     * @return The identity, or empty if the user has no profile for that role
+     */
+    public Optional<Identity> resolve(UUID userId, String role) {
+        return Optional.ofNullable(identities.get(userId, id -> load(id, role)));
+    }
+
+    /**
+     * Resolve a student id from either a user id or a student id, in at most one query
+     */
+    public Optional<UUID> resolveStudentId(UUID userOrStudentId) {
+        Identity cached = identities.getIfPresent(userOrStudentId);
+        if (cached != null && cached.getStudentId() != null) {
+            return Optional.of(cached.getStudentId());
+        }
+
+        List<Object[]> rows = studentRepository.findIdPairsByIdOrUserIdIn(List.of(userOrStudentId));
+        return pickId(userOrStudentId, rows, Identity::student);
+    }
+
+    /**
+     * Resolve a teacher id from either a user id or a teacher id, in at most one query
+     */
+    public Optional<UUID> resolveTeacherId(UUID userOrTeacherId) {
+        Identity cached = identities.getIfPresent(userOrTeacherId);
+        if (cached != null && cached.getTeacherId() != null) {
+            return Optional.of(cached.getTeacherId());
+        }
+
+        List<Object[]> rows = teacherRepository.findIdPairsByIdOrUserId(userOrTeacherId);
+        return pickId(userOrTeacherId, rows, Identity::teacher);
+    }
+
+    // Drop a user's cached identity once the surrounding transaction (profile delete) commits
+    public void evict(UUID userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            identities.invalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                identities.invalidate(userId);
+            }
+        });
+    }
+
+    private Identity load(UUID userId, String role) {
+        if ("student".equalsIgnoreCase(role)) {
+            return studentRepository.findIdByUserId(userId).map(Identity::student).orElse(null);
+        }
+        if ("teacher".equalsIgnoreCase(role)) {
+            return teacherRepository.findIdByUserId(userId).map(Identity::teacher).orElse(null);
+        }
+        return null;
+    }
+
+    // Rows are [profileId, userId]; a user-id match wins and is cached under that user id
+    private Optional<UUID> pickId(UUID id, List<Object[]> rows, Function<UUID, Identity> identityOf) {
+        UUID byProfileId = null;
+        for (Object[] row : rows) {
+            UUID profileId = (UUID) row[0];
+            if (id.equals(row[1])) {
+                identities.put(id, identityOf.apply(profileId));
+                return Optional.of(profileId);
+            }
+            byProfileId = profileId;
+        }
+        return Optional.ofNullable(byProfileId);
+    }
+
+    public static final class Identity {
+        private final UUID studentId;
+        private final UUID teacherId;
+
+        private Identity(UUID studentId, UUID teacherId) {
+            this.studentId = studentId;
+            this.teacherId = teacherId;
+        }
+
+        static Identity student(UUID studentId) {
+            return new Identity(studentId, null);
+        }
+
+        static Identity teacher(UUID teacherId) {
+            return new Identity(null, teacherId);
+        }
+
+        public UUID getStudentId() { return studentId; }
+        public UUID getTeacherId() { return teacherId; }
+    }
+}
@@ -0,0 +1,89 @@
+package com.classechobackend.service;
+
+import java.time.Instant;
+
+import io.jsonwebtoken.Claims;
+
+/**
+ * Immutable view of a verified JWT.
+ * Produced once per token by {@link JwtService#parseToken(String)} so callers never re-parse.
+ */
+public final class JwtPrincipal {
+
+    private final String userId;
+    private final String email;
+    private final String role;
+    private final String type;
+    private final Instant expiresAt;
+    // Profile ids embedded at issue time; absent in tokens issued before they were added
+    private final String studentId;
+    private final String teacherId;
+
+    public JwtPrincipal(String userId, String email, String role, String type, Instant expiresAt,
+                        String studentId, String teacherId) {
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+        this.type = type;
+        this.expiresAt = expiresAt;
+        this.studentId = studentId;
+        this.teacherId = teacherId;
+    }
+
+    static JwtPrincipal fromClaims(Claims claims) {
+        return new JwtPrincipal(
+                claims.get("userId", String.class),
+                claims.get("email", String.class),
+                claims.get("role", String.class),
+                claims.get("type", String.class),
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null,
+                claims.get("studentId", String.class),
+                claims.get("teacherId", String.class)
+        );
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public String getStudentId() {
+        return studentId;
+    }
+
+    public String getTeacherId() {
+        return teacherId;
+    }
+
+    public boolean hasProfileId() {
+        return studentId != null || teacherId != null;
+    }
+
+    // Refresh tokens have always been typed; access tokens issued before the type claim existed carry none
+    public boolean isAccessToken() {
+        return !isRefreshToken();
+    }
+
+    public boolean isRefreshToken() {
+        return "refresh".equals(type);
+    }
+
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.isBefore(Instant.now());
+    }
+}
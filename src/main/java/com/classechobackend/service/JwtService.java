@@ -1,9 +1,14 @@
 package com.classechobackend.service;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 import javax.crypto.SecretKey;
@@ -12,8 +17,11 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 
 @Service
 public class JwtService {
@@ -24,8 +32,16 @@ public class JwtService {
     @Value("${jwt.token-expiration}")
     private long tokenExpiration;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    // Derived once at startup; both are immutable and thread-safe
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
     }
 
     public String generateToken(String userId, String email, String role) {
@@ -33,7 +49,8 @@ public class JwtService {
         claims.put("userId", userId);
         claims.put("email", email);
         claims.put("role", role);
-        
+        claims.put("type", "access");
+
         return createToken(claims, userId, tokenExpiration);
     }
 
@@ -41,14 +58,41 @@ public class JwtService {
         return generateToken(userId, email, role);
     }
 
+    /**
+     * Access token that also carries the user's student or teacher profile id,
+     * so authenticated requests need no profile lookup
+     */
+    public String generateAccessToken(String userId, String email, String role, UUID studentId, UUID teacherId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("userId", userId);
+        claims.put("email", email);
+        claims.put("role", role);
+        claims.put("type", "access");
+        if (studentId != null) {
+            claims.put("studentId", studentId.toString());
+        }
+        if (teacherId != null) {
+            claims.put("teacherId", teacherId.toString());
+        }
+
+        return createToken(claims, userId, tokenExpiration);
+    }
+
+    // Only identifies the user; rotation loads the user, so name and role come from there
     public String generateRefreshToken(String userId, String email) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("userId", userId);
         claims.put("email", email);
         claims.put("type", "refresh");
-        
+        // Unique id so two refresh tokens issued in the same second never hash alike
+        claims.put("jti", UUID.randomUUID().toString());
+
         // Refresh tokens have longer expiration (30 days)
-        return createToken(claims, userId, tokenExpiration * 30);
+        return createToken(claims, userId, getRefreshTokenExpiration());
+    }
+
+    public long getRefreshTokenExpiration() {
+        return tokenExpiration * 30;
     }
 
     public long getAccessTokenExpiration() {
@@ -65,22 +109,48 @@ public class JwtService {
                 .subject(subject)
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    public boolean validateToken(String token) {
+    /**
+     * Verify signature and expiry once and return every claim callers need
+     * @param token The compact JWT
+     * @return The parsed principal
+     * @throws JwtException if the token is malformed, forged or expired
+     */
+    public JwtPrincipal parseToken(String token) {
+        // The parser rejects expired tokens itself, no second parse is needed for the expiry check
+        return JwtPrincipal.fromClaims(extractAllClaims(token));
+    }
+
+    /**
+     * Same as {@link #parseToken(String)} but returns empty instead of throwing
+     */
+    public Optional<JwtPrincipal> verify(String token) {
+        try {
+            return Optional.of(parseToken(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Hex SHA-256 of a compact token, used wherever a token must be stored or keyed without keeping it verbatim
+     */
+    public static String hash(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token);
-            return !isTokenExpired(token);
-        } catch (Exception e) {
-            return false;
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
+    public boolean validateToken(String token) {
+        return verify(token).isPresent();
+    }
+
     public boolean isTokenExpired(String token) {
         return extractExpiration(token).before(new Date());
     }
@@ -107,11 +177,7 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return jwtParser.parseSignedClaims(token).getPayload();
     }
 
     public long getTokenExpiration() {
@@ -0,0 +1,103 @@
+package com.classechobackend.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded cache of verified tokens, keyed by the SHA-256 digest of the compact JWT.
+ * Repeated requests with the same bearer token skip the HMAC verification.
+ * Only successfully verified tokens are cached, and an entry never outlives the token's exp claim.
+ */
+@Component
+public class JwtTokenCache {
+
+    private final JwtService jwtService;
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Cache<String, JwtPrincipal> cache;
+
+    public JwtTokenCache(
+            JwtService jwtService,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.cache.enabled:true}") boolean enabled,
+            @Value("${jwt.cache.max-size:10000}") long maxSize,
+            @Value("${jwt.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.jwtService = jwtService;
+        this.enabled = enabled;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+
+        // Caffeine's default eviction policy is W-TinyLFU
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenExpiry())
+                .recordStats()
+                .build();
+
+        // Exposes cache.gets{result=hit|miss}, cache.size and cache.evictions tagged cache=jwtTokens
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwtTokens");
+    }
+
+    /**
+     * Resolve a bearer token, verifying it only on a cache miss.
+     * Only access tokens are accepted (and cached): a refresh token is never a bearer credential.
+     * @param token The compact JWT
+     * @return The principal, or empty if the token is invalid, expired or not an access token
+     */
+    public Optional<JwtPrincipal> verify(String token) {
+        if (!enabled) {
+            return jwtService.verify(token).filter(JwtPrincipal::isAccessToken);
+        }
+
+        String key = JwtService.hash(token);
+        JwtPrincipal cached = cache.getIfPresent(key);
+        if (cached != null && !cached.isExpired()) {
+            return Optional.of(cached);
+        }
+
+        Optional<JwtPrincipal> verified = jwtService.verify(token).filter(JwtPrincipal::isAccessToken);
+        verified.ifPresent(principal -> cache.put(key, principal));
+        return verified;
+    }
+
+    public void invalidate(String token) {
+        cache.invalidate(JwtService.hash(token));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    // Per-entry lifetime: the configured TTL, capped at the time left until the token's exp
+    private class TokenExpiry implements Expiry<String, JwtPrincipal> {
+
+        @Override
+        public long expireAfterCreate(String key, JwtPrincipal principal, long currentTime) {
+            if (principal.getExpiresAt() == null) {
+                return ttlNanos;
+            }
+            long untilExp = Duration.between(Instant.now(), principal.getExpiresAt()).toNanos();
+            return Math.max(0, Math.min(ttlNanos, untilExp));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, principal, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, JwtPrincipal principal, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
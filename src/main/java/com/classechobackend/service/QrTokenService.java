@@ -0,0 +1,202 @@
+package com.classechobackend.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Signed, rotating QR tokens for attendance sessions.
+ * A token carries the session id, course id, date, section and the time step it was issued in,
+ * authenticated with a truncated HMAC-SHA256. Verifying one is pure CPU work: no registry or
+ * database lookup is needed to know the token is genuine and recent. A screenshot stops working
+ * once its time step falls out of the allowed window.
+ *
+ * Layout before Base64url: version(1) | sessionId(16) | courseId(16) | epochDay(4) | step(8)
+ * | sectionLength(1) | section(UTF-8) | mac(16), prefixed with "Q1." so it never collides with
+ * the static "ATT-" session codes.
+ */
+@Component
+public class QrTokenService {
+
+    public static final String PREFIX = "Q1.";
+
+    private static final byte VERSION = 1;
+    private static final int MAC_LENGTH = 16;
+    private static final int FIXED_LENGTH = 1 + 16 + 16 + 4 + 8 + 1;
+    private static final int MAX_SECTION_BYTES = 255;
+
+    private final SecretKeySpec key;
+    private final long stepSeconds;
+    private final long allowedSkewSteps;
+    private final Clock clock;
+
+    // Mac is not thread-safe; one per thread avoids both locking and per-call Mac.getInstance
+    private final ThreadLocal<Mac> macs;
+
+    @Autowired
+    public QrTokenService(
+            @Value("${attendance.qr.secret:${jwt.secret}}") String secret,
+            @Value("${attendance.qr.step-seconds:30}") long stepSeconds,
+            @Value("${attendance.qr.allowed-skew-steps:1}") long allowedSkewSteps) {
+        this(secret, stepSeconds, allowedSkewSteps, Clock.systemUTC());
+    }
+
+    // Lets tests pin the time step
+    QrTokenService(String secret, long stepSeconds, long allowedSkewSteps, Clock clock) {
+        // Derived key, so the QR key differs from the JWT key even when the secret is shared
+        this.key = new SecretKeySpec(
+                hmac(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"),
+                        "attendance-qr-v1".getBytes(StandardCharsets.UTF_8)),
+                "HmacSHA256");
+        this.stepSeconds = stepSeconds;
+        this.allowedSkewSteps = allowedSkewSteps;
+        this.clock = clock;
+        this.macs = ThreadLocal.withInitial(() -> newMac(key));
+    }
+
+    public static boolean isToken(String qrCode) {
+        return qrCode != null && qrCode.startsWith(PREFIX);
+    }
+
+    /**
+     * Issue the token for the current time step
+     */
+    public String issue(UUID sessionId, UUID courseId, LocalDate date, String section) {
+        return issue(sessionId, courseId, date, section, currentStep());
+    }
+
+    private String issue(UUID sessionId, UUID courseId, LocalDate date, String section, long step) {
+        byte[] sectionBytes = section == null ? new byte[0] : section.getBytes(StandardCharsets.UTF_8);
+        if (sectionBytes.length > MAX_SECTION_BYTES) {
+            throw new IllegalArgumentException("Section is too long for a QR token");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(FIXED_LENGTH + sectionBytes.length + MAC_LENGTH);
+        buffer.put(VERSION);
+        putUuid(buffer, sessionId);
+        putUuid(buffer, courseId);
+        buffer.putInt((int) date.toEpochDay());
+        buffer.putLong(step);
+        buffer.put((byte) sectionBytes.length);
+        buffer.put(sectionBytes);
+
+        Mac mac = macs.get();
+        mac.update(buffer.array(), 0, buffer.position());
+        buffer.put(mac.doFinal(), 0, MAC_LENGTH);
+
+        return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Check a token's signature and freshness
+     * @param token The scanned token
+     * @return The embedded claims, or empty if the token is malformed, forged or outside the time window
+     */
+    public Optional<QrClaims> verify(String token) {
+        if (!isToken(token)) {
+            return Optional.empty();
+        }
+
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token.substring(PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (bytes.length < FIXED_LENGTH + MAC_LENGTH || bytes[0] != VERSION) {
+            return Optional.empty();
+        }
+
+        int signedLength = bytes.length - MAC_LENGTH;
+        Mac mac = macs.get();
+        mac.update(bytes, 0, signedLength);
+        byte[] expected = Arrays.copyOf(mac.doFinal(), MAC_LENGTH);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(bytes, signedLength, bytes.length))) {
+            return Optional.empty();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, signedLength - 1);
+        UUID sessionId = getUuid(buffer);
+        UUID courseId = getUuid(buffer);
+        LocalDate date = LocalDate.ofEpochDay(buffer.getInt());
+        long step = buffer.getLong();
+        int sectionLength = Byte.toUnsignedInt(buffer.get());
+        if (sectionLength != buffer.remaining()) {
+            return Optional.empty();
+        }
+        String section = sectionLength == 0 ? null : new String(bytes, buffer.position(), sectionLength, StandardCharsets.UTF_8);
+
+        if (Math.abs(currentStep() - step) > allowedSkewSteps) {
+            return Optional.empty();
+        }
+        return Optional.of(new QrClaims(sessionId, courseId, date, section));
+    }
+
+    public long currentStep() {
+        return clock.instant().getEpochSecond() / stepSeconds;
+    }
+
+    // When the token issued now stops being the current one
+    public LocalDateTime nextRotation() {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond((currentStep() + 1) * stepSeconds), ZoneId.systemDefault());
+    }
+
+    private static void putUuid(ByteBuffer buffer, UUID uuid) {
+        buffer.putLong(uuid.getMostSignificantBits());
+        buffer.putLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(ByteBuffer buffer) {
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+
+    private static byte[] hmac(SecretKeySpec key, byte[] message) {
+        return newMac(key).doFinal(message);
+    }
+
+    public static final class QrClaims {
+        private final UUID sessionId;
+        private final UUID courseId;
+        private final LocalDate date;
+        private final String section;
+
+        private QrClaims(UUID sessionId, UUID courseId, LocalDate date, String section) {
+            this.sessionId = sessionId;
+            this.courseId = courseId;
+            this.date = date;
+            this.section = section;
+        }
+
+        public UUID getSessionId() { return sessionId; }
+        public UUID getCourseId() { return courseId; }
+        public LocalDate getDate() { return date; }
+        public String getSection() { return section; }
+    }
+}
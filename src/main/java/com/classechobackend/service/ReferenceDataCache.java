@@ -0,0 +1,43 @@
+package com.classechobackend.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.classechobackend.model.Course;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Explicit evictions for the second-level cache.
+ * Writes made through the session keep the cache current on their own (READ_WRITE regions);
+ * this covers rows the database changes behind Hibernate's back, e.g. foreign keys
+ * cleared or cascaded when a teacher row goes away.
+ */
+@Component
+public class ReferenceDataCache {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public ReferenceDataCache(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    // Drop every cached course, after commit so a concurrent read cannot re-cache the old row
+    public void evictCoursesAfterCommit() {
+        runAfterCommit(() -> entityManagerFactory.getCache().evict(Course.class));
+    }
+
+    private void runAfterCommit(Runnable eviction) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,142 @@
+package com.classechobackend.service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.classechobackend.exception.BadRequestException;
+import com.classechobackend.model.RefreshToken;
+import com.classechobackend.model.User;
+import com.classechobackend.repository.RefreshTokenRepository;
+import com.classechobackend.repository.UserRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Server-side store for refresh tokens.
+ * Only the SHA-256 hash of each token is persisted. A token is single use: refreshing
+ * deletes its row and issues a new token. Presenting a correctly signed token that is
+ * no longer stored means it was already used, so every token of that user is revoked.
+ */
+@Service
+@Transactional
+public class RefreshTokenService {
+
+    private final RefreshTokenRepository refreshTokenRepository;
+    private final UserRepository userRepository;
+    private final JwtService jwtService;
+
+    // Hashes known to be revoked, rejects replays without a database round trip.
+    // Rotated tokens are deliberately not added so a replay still reaches reuse detection.
+    private final Cache<String, Boolean> revokedHashes;
+
+    public RefreshTokenService(
+            RefreshTokenRepository refreshTokenRepository,
+            UserRepository userRepository,
+            JwtService jwtService,
+            @Value("${jwt.refresh.revoked-cache-size:10000}") long revokedCacheSize) {
+        this.refreshTokenRepository = refreshTokenRepository;
+        this.userRepository = userRepository;
+        this.jwtService = jwtService;
+        this.revokedHashes = Caffeine.newBuilder()
+                .maximumSize(revokedCacheSize)
+                // A revoked token is worthless once its own expiry has passed
+                .expireAfterWrite(Duration.ofMillis(jwtService.getRefreshTokenExpiration()))
+                .build();
+    }
+
+    /**
+     * Issue and store a new refresh token
+     * @return The compact refresh token to hand to the client
+     */
+    public String issue(UUID userId, String email) {
+        String token = jwtService.generateRefreshToken(userId.toString(), email);
+
+        refreshTokenRepository.save(new RefreshToken(
+                userId,
+                JwtService.hash(token),
+                LocalDateTime.now().plus(Duration.ofMillis(jwtService.getRefreshTokenExpiration()))
+        ));
+        return token;
+    }
+
+    /**
+     * Consume a refresh token and issue its replacement.
+     * The user is loaded (second-level cached) so a deleted user cannot keep rotating and a changed
+     * role or email reaches the new tokens. Not rolled back on BadRequestException so a
+     * reuse-triggered revocation sticks.
+     * @param refreshToken The token presented by the client
+     * @return The current user together with the replacement token
+     */
+    @Transactional(noRollbackFor = BadRequestException.class)
+    public Rotation rotate(String refreshToken) {
+        String hash = JwtService.hash(refreshToken);
+        if (revokedHashes.getIfPresent(hash) != null) {
+            throw new BadRequestException("Refresh token has been revoked");
+        }
+
+        JwtPrincipal principal = jwtService.verify(refreshToken)
+                .orElseThrow(() -> new BadRequestException("Invalid or expired refresh token"));
+        if (!principal.isRefreshToken()) {
+            throw new BadRequestException("Token is not a refresh token");
+        }
+
+        UUID userId = UUID.fromString(principal.getUserId());
+        if (refreshTokenRepository.deleteActiveByTokenHash(hash, LocalDateTime.now()) == 0) {
+            // Valid signature but no stored row: the token was already rotated or revoked
+            revokedHashes.put(hash, Boolean.TRUE);
+            int revoked = refreshTokenRepository.deleteByUserId(userId);
+            System.out.println("Refresh token reuse detected for user " + userId + ", revoked " + revoked + " tokens");
+            throw new BadRequestException("Refresh token has been revoked");
+        }
+
+        User user = userRepository.findById(userId).orElse(null);
+        if (user == null) {
+            refreshTokenRepository.deleteByUserId(userId);
+            throw new BadRequestException("User not found");
+        }
+
+        String replacement = issue(userId, user.getEmail());
+        return new Rotation(user, replacement);
+    }
+
+    // Revoke a single token (logout)
+    public void revoke(String refreshToken) {
+        String hash = JwtService.hash(refreshToken);
+        refreshTokenRepository.deleteByTokenHash(hash);
+        revokedHashes.put(hash, Boolean.TRUE);
+    }
+
+    // Revoke every refresh token of a user (logout everywhere)
+    public int revokeAllForUser(UUID userId) {
+        return refreshTokenRepository.deleteByUserId(userId);
+    }
+
+    // Purge expired rows in a single DELETE
+    @Scheduled(cron = "${jwt.refresh.purge-cron:0 0 4 * * *}")
+    public int purgeExpiredTokens() {
+        int purged = refreshTokenRepository.deleteExpired(LocalDateTime.now());
+        if (purged > 0) {
+            System.out.println("Purged " + purged + " expired refresh tokens");
+        }
+        return purged;
+    }
+
+    public static final class Rotation {
+        private final User user;
+        private final String refreshToken;
+
+        private Rotation(User user, String refreshToken) {
+            this.user = user;
+            this.refreshToken = refreshToken;
+        }
+
+        public User getUser() { return user; }
+        public String getRefreshToken() { return refreshToken; }
+    }
+}
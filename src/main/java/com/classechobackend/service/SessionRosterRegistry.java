@@ -0,0 +1,263 @@
+package com.classechobackend.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.classechobackend.repository.AttendanceRepository;
+import com.classechobackend.repository.CourseEnrollmentRepository;
+
+/**
+ * Per-session roster of the enrolled students, indexed densely, with a bitmap of who is present.
+ * Built on the first scan of a session from one enrollment query and one attendance query, after
+ * which enrollment checks, duplicate-scan rejection, the live present count and the absentee list
+ * are all answered in memory. A roster is rebuilt lazily on its next use once the course's
+ * enrollment changes. The attendance unique constraint stays the backstop across instances.
+ */
+@Component
+public class SessionRosterRegistry {
+
+    public enum ScanOutcome {
+        MARKED, ALREADY_MARKED, NOT_ENROLLED
+    }
+
+    private final CourseEnrollmentRepository enrollmentRepository;
+    private final AttendanceRepository attendanceRepository;
+
+    // Completed once the roster is loaded; a session's entry is replaced (never updated in place) to rebuild it
+    private final Map<UUID, CompletableFuture<Roster>> rostersBySessionId = new ConcurrentHashMap<>();
+
+    // Bumped whenever a course's enrollment changes; a roster built at an older version is stale
+    private final Map<UUID, Long> enrollmentVersions = new ConcurrentHashMap<>();
+
+    public SessionRosterRegistry(CourseEnrollmentRepository enrollmentRepository, AttendanceRepository attendanceRepository) {
+        this.enrollmentRepository = enrollmentRepository;
+        this.attendanceRepository = attendanceRepository;
+    }
+
+    /**
+     * Get the roster of a session, loading or rebuilding it when needed.
+     * The scan that installs a pending entry runs the queries, outside any map lock; concurrent scans wait
+     * for that entry, so a burst of first scans loads once. The previous roster hands its bits over and
+     * forwards later calls, so a scan still holding it loses nothing.
+     */
+    public Roster forSession(ActiveSessionRegistry.ActiveSession session) {
+        UUID sessionId = session.getSessionId();
+        while (true) {
+            CompletableFuture<Roster> current = rostersBySessionId.get(sessionId);
+            Roster previous = current == null ? null : await(current);
+            long version = enrollmentVersions.getOrDefault(session.getCourseId(), 0L);
+            if (previous != null && previous.version == version) {
+                return previous;
+            }
+
+            CompletableFuture<Roster> loading = new CompletableFuture<>();
+            boolean claimed = current == null
+                    ? rostersBySessionId.putIfAbsent(sessionId, loading) == null
+                    : rostersBySessionId.replace(sessionId, current, loading);
+            if (claimed) {
+                return load(session, version, current, previous, loading);
+            }
+            // Another scan got there first, wait for its entry on the next pass
+        }
+    }
+
+    public void remove(UUID sessionId) {
+        rostersBySessionId.remove(sessionId);
+    }
+
+    // Mark the rosters of a course stale once the surrounding transaction (an enrollment change) commits
+    public void enrollmentChanged(UUID courseId) {
+        afterCommit(() -> enrollmentVersions.merge(courseId, 1L, Long::sum));
+    }
+
+    // Mark every roster stale, for changes that are not tied to one course (e.g. a student being deleted)
+    public void enrollmentsChanged() {
+        afterCommit(() -> rostersBySessionId.values()
+                .forEach(entry -> entry.thenAccept(roster -> enrollmentVersions.merge(roster.courseId, 1L, Long::sum))));
+    }
+
+    // Mirror a manual mark into any roster of that class once it commits (a roster still loading gets it when done)
+    public void attendanceMarked(UUID courseId, LocalDate date, String section, Map<UUID, Boolean> presentByStudentId) {
+        afterCommit(() -> {
+            for (CompletableFuture<Roster> entry : rostersBySessionId.values()) {
+                entry.thenAccept(roster -> {
+                    if (roster.courseId.equals(courseId) && roster.date.equals(date) && Objects.equals(roster.section, section)) {
+                        presentByStudentId.forEach(roster::setPresent);
+                    }
+                });
+            }
+        });
+    }
+
+    // Release the present bit of a scan the ingestion pipeline dropped, so the student can scan again
+    public void scanDropped(UUID courseId, LocalDate date, String section, UUID studentId) {
+        attendanceMarked(courseId, date, section, Map.of(studentId, false));
+    }
+
+    private Roster load(ActiveSessionRegistry.ActiveSession session, long version,
+            CompletableFuture<Roster> replaced, Roster previous, CompletableFuture<Roster> loading) {
+        Roster roster;
+        try {
+            List<Object[]> enrolled = enrollmentRepository.findRosterByCourseIdAndSection(session.getCourseId(), session.getSection());
+            roster = new Roster(session, version, enrolled);
+
+            for (UUID studentId : attendanceRepository.findPresentStudentIds(session.getCourseId(), session.getDate(), session.getSection())) {
+                roster.setPresent(studentId, true);
+            }
+        } catch (RuntimeException | Error e) {
+            // Put back what was there, so the roster in use is kept and the next scan tries the load again
+            if (replaced != null) {
+                rostersBySessionId.replace(session.getSessionId(), loading, replaced);
+            } else {
+                rostersBySessionId.remove(session.getSessionId(), loading);
+            }
+            loading.completeExceptionally(e);
+            throw e;
+        }
+
+        // Scans accepted here may still be queued for the batched write, carry them over
+        if (previous != null) {
+            previous.handOverTo(roster);
+        }
+        loading.complete(roster);
+        return roster;
+    }
+
+    // Wait for a roster being loaded by another scan, rethrowing the load's own failure
+    private static Roster await(CompletableFuture<Roster> entry) {
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Enrolled students in roll number order; bit i of present is set when students[i] is present
+    public static final class Roster {
+        private final UUID courseId;
+        private final LocalDate date;
+        private final String section;
+        private final long version;
+
+        private final UUID[] studentIds;
+        private final String[] rollNos;
+        private final Map<UUID, Integer> indexByStudentId;
+        private final BitSet present;
+
+        // Set once a rebuilt roster replaces this one; every later call is forwarded to it
+        private Roster successor;
+
+        private Roster(ActiveSessionRegistry.ActiveSession session, long version, List<Object[]> enrolled) {
+            this.courseId = session.getCourseId();
+            this.date = session.getDate();
+            this.section = session.getSection();
+            this.version = version;
+
+            this.studentIds = new UUID[enrolled.size()];
+            this.rollNos = new String[enrolled.size()];
+            this.indexByStudentId = new HashMap<>(enrolled.size() * 2);
+            for (int i = 0; i < enrolled.size(); i++) {
+                studentIds[i] = (UUID) enrolled.get(i)[0];
+                rollNos[i] = (String) enrolled.get(i)[1];
+                indexByStudentId.put(studentIds[i], i);
+            }
+            this.present = new BitSet(studentIds.length);
+        }
+
+        // Claim the present bit for a scan
+        public synchronized ScanOutcome markPresent(UUID studentId) {
+            if (successor != null) {
+                return successor.markPresent(studentId);
+            }
+            Integer index = indexByStudentId.get(studentId);
+            if (index == null) {
+                return ScanOutcome.NOT_ENROLLED;
+            }
+            if (present.get(index)) {
+                return ScanOutcome.ALREADY_MARKED;
+            }
+            present.set(index);
+            return ScanOutcome.MARKED;
+        }
+
+        // Release a bit claimed by a scan that was then not accepted
+        public synchronized void unmark(UUID studentId) {
+            setPresent(studentId, false);
+        }
+
+        public synchronized int presentCount() {
+            if (successor != null) {
+                return successor.presentCount();
+            }
+            return present.cardinality();
+        }
+
+        public synchronized int enrolledCount() {
+            if (successor != null) {
+                return successor.enrolledCount();
+            }
+            return studentIds.length;
+        }
+
+        // Rows are [studentId, rollNo] of every enrolled student without a present bit
+        public synchronized List<Object[]> absentees() {
+            if (successor != null) {
+                return successor.absentees();
+            }
+            List<Object[]> absentees = new ArrayList<>(studentIds.length - present.cardinality());
+            for (int i = present.nextClearBit(0); i < studentIds.length; i = present.nextClearBit(i + 1)) {
+                absentees.add(new Object[] {studentIds[i], rollNos[i]});
+            }
+            return absentees;
+        }
+
+        private synchronized void setPresent(UUID studentId, boolean isPresent) {
+            if (successor != null) {
+                successor.setPresent(studentId, isPresent);
+                return;
+            }
+            Integer index = indexByStudentId.get(studentId);
+            if (index != null) {
+                present.set(index, isPresent);
+            }
+        }
+
+        // Copy the present bits into the rebuilt roster and retire this one, atomically for scans holding it.
+        // Locks run from old to new roster only, so they cannot deadlock
+        private synchronized void handOverTo(Roster rebuilt) {
+            for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+                rebuilt.setPresent(studentIds[i], true);
+            }
+            successor = rebuilt;
+        }
+    }
+}
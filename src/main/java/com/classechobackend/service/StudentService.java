@@ -22,6 +22,12 @@ public class StudentService {
     @Autowired
     private StudentRepository studentRepository;
 
+    @Autowired
+    private IdentityResolver identityResolver;
+
+    @Autowired
+    private SessionRosterRegistry sessionRosters;
+
     public StudentProfileDTO getStudentProfile(UUID userId) {
         Student student = studentRepository.findByUserId(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Student profile not found for user"));
@@ -82,6 +88,8 @@ public class StudentService {
                 .orElseThrow(() -> new ResourceNotFoundException("Student profile not found for user"));
 
         studentRepository.delete(student);
+        identityResolver.evict(userId);
+        sessionRosters.enrollmentsChanged();
     }
 
     private StudentProfileDTO mapToDTO(Student student) {
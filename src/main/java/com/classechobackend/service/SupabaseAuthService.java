@@ -1,15 +1,26 @@
 package com.classechobackend.service;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 
 import com.classechobackend.exception.BadRequestException;
+import com.classechobackend.service.SupabaseResilience.Family;
 import com.fasterxml.jackson.databind.JsonNode;
-
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import reactor.core.publisher.Mono;
 
 @Service
@@ -17,9 +28,70 @@ public class SupabaseAuthService {
 
     private final WebClient webClient;
 
+    // Supabase token hash -> in-flight or completed /auth/v1/user lookup
+    private final AsyncCache<String, JsonNode> userCache;
+
+    private final SupabaseResilience resilience;
+    private final SupabaseJwtVerifier jwtVerifier;
+    private final Counter localVerifications;
+    private final Counter remoteFallbacks;
+
     @Autowired
-    public SupabaseAuthService(WebClient supabaseWebClient) {
+    public SupabaseAuthService(
+            WebClient supabaseWebClient,
+            SupabaseResilience resilience,
+            SupabaseJwtVerifier jwtVerifier,
+            MeterRegistry meterRegistry,
+            @Value("${supabase.user-cache.ttl-seconds:30}") long userCacheTtlSeconds,
+            @Value("${supabase.user-cache.max-size:5000}") long userCacheMaxSize) {
         this.webClient = supabaseWebClient;
+        this.resilience = resilience;
+        this.userCache = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(userCacheTtlSeconds))
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, userCache, "supabaseUsers");
+
+        this.jwtVerifier = jwtVerifier;
+        this.localVerifications = Counter.builder("supabase.auth.verifications").tag("path", "local").register(meterRegistry);
+        this.remoteFallbacks = Counter.builder("supabase.auth.verifications").tag("path", "remote").register(meterRegistry);
+        Gauge.builder("supabase.auth.local.hit.ratio", this, SupabaseAuthService::localHitRatio)
+                .description("Share of login token checks answered without calling Supabase")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resolve the user behind a Supabase access token.
+     * In local verification mode the token is verified in-process and no outbound call is made;
+     * the remote /auth/v1/user lookup is only used when the token lacks the claims we need.
+     * @param token The Supabase access token
+     * @return User node with id, email, user_metadata and app_metadata
+     */
+    public Mono<JsonNode> resolveUser(String token) {
+        if (!jwtVerifier.isEnabled()) {
+            return getUserCached(token);
+        }
+
+        Optional<JsonNode> local;
+        try {
+            local = jwtVerifier.verify(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Mono.error(new BadRequestException("Supabase token rejected: " + e.getMessage()));
+        }
+
+        if (local.isPresent()) {
+            localVerifications.increment();
+            return Mono.just(local.get());
+        }
+        remoteFallbacks.increment();
+        return getUserCached(token);
+    }
+
+    private double localHitRatio() {
+        double local = localVerifications.count();
+        double total = local + remoteFallbacks.count();
+        return total == 0 ? 0 : local / total;
     }
 
     //SignUp with Supabase
@@ -30,16 +102,12 @@ public class SupabaseAuthService {
                 "data", metadata != null ? metadata : Map.of()
         );
 
-        return webClient.post()
+        return resilience.guard(Family.AUTH, webClient.post()
                 .uri("/auth/v1/signup")
                 .bodyValue(body)
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase Auth error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase Auth error: "))
+                .bodyToMono(JsonNode.class));
     }
 
     //Login In
@@ -49,59 +117,51 @@ public class SupabaseAuthService {
                 "password", password
         );
 
-        return webClient.post()
+        return resilience.guard(Family.AUTH, webClient.post()
                 .uri("/auth/v1/token?grant_type=password")
                 .bodyValue(body)
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase Auth error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase Auth error: "))
+                .bodyToMono(JsonNode.class));
     }
 
     //Get User
     public Mono<JsonNode> getUser(String token) {
-        return webClient.get()
+        return resilience.guardIdempotent(Family.AUTH, webClient.get()
                 .uri("/auth/v1/user")
                 .header("Authorization", "Bearer " + token)
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase Auth error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase Auth error: "))
+                .bodyToMono(JsonNode.class));
+    }
+
+    //Get User, cached briefly per token.
+    //Concurrent callers with the same token share one in-flight request; failed lookups are not cached.
+    public Mono<JsonNode> getUserCached(String token) {
+        String key = JwtService.hash(token);
+        // suppressCancel: one subscriber cancelling must not cancel the lookup other callers are waiting on
+        return Mono.fromFuture(() -> userCache.get(key, (k, executor) -> getUser(token).toFuture()), true);
     }
 
     //Sign Out
     public Mono<Void> signOut(String token) {
-        return webClient.post()
+        return resilience.guard(Family.AUTH, webClient.post()
                 .uri("/auth/v1/logout")
                 .header("Authorization", "Bearer " + token)
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase Auth error: " + errorBody)))
-                )
-                .bodyToMono(Void.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase Auth error: "))
+                .bodyToMono(Void.class));
     }
 
     //Update User
     public Mono<JsonNode> updateUser(String token, Map<String, Object> updates) {
-        return webClient.put()
+        return resilience.guard(Family.AUTH, webClient.put()
                 .uri("/auth/v1/user")
                 .header("Authorization", "Bearer " + token)
                 .bodyValue(updates)
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase Auth error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase Auth error: "))
+                .bodyToMono(JsonNode.class));
     }
 
 
@@ -109,15 +169,11 @@ public class SupabaseAuthService {
     public Mono<JsonNode> resetPassword(String email) {
         Map<String, String> body = Map.of("email", email);
 
-        return webClient.post()
+        return resilience.guard(Family.AUTH, webClient.post()
                 .uri("/auth/v1/recover")
                 .bodyValue(body)
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase Auth error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase Auth error: "))
+                .bodyToMono(JsonNode.class));
     }
 }
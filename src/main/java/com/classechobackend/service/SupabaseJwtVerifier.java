@@ -0,0 +1,132 @@
+package com.classechobackend.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Key;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.LocatorAdapter;
+import io.jsonwebtoken.ProtectedHeader;
+import io.jsonwebtoken.security.Jwk;
+import io.jsonwebtoken.security.JwkSet;
+import io.jsonwebtoken.security.Jwks;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Verifies Supabase access tokens locally, either with the project's JWT secret (HS256)
+ * or with keys from a locally configured JWKS file (asymmetric signing keys).
+ * Only end-user session tokens are accepted: aud must be "authenticated" and iss this project's
+ * auth endpoint, so the anon key, service tokens or tokens of another project never log anyone in.
+ * The verified claims are reshaped like a /auth/v1/user response so callers can use either source.
+ */
+@Component
+public class SupabaseJwtVerifier {
+
+    @Value("${supabase.auth.verification-mode:remote}")
+    private String verificationMode;
+
+    @Value("${supabase.jwt-secret:}")
+    private String jwtSecret;
+
+    @Value("${supabase.jwks-file:}")
+    private String jwksFile;
+
+    @Value("${supabase.url}")
+    private String supabaseUrl;
+
+    private static final String AUDIENCE = "authenticated";
+
+    private final ObjectMapper objectMapper;
+
+    private JwtParser parser;
+
+    public SupabaseJwtVerifier(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!"local".equalsIgnoreCase(verificationMode)) {
+            return;
+        }
+
+        if (!jwksFile.isBlank()) {
+            JwkSet jwkSet = Jwks.setParser().build()
+                    .parse(Files.readString(Path.of(jwksFile), StandardCharsets.UTF_8));
+            Map<String, Key> keysById = new HashMap<>();
+            for (Jwk<?> jwk : jwkSet.getKeys()) {
+                keysById.put(jwk.getId(), jwk.toKey());
+            }
+            parser = Jwts.parser()
+                    .requireAudience(AUDIENCE)
+                    .requireIssuer(issuer())
+                    .keyLocator(new LocatorAdapter<Key>() {
+                        @Override
+                        protected Key locate(ProtectedHeader header) {
+                            Key key = keysById.get(header.getKeyId());
+                            if (key == null) {
+                                throw new JwtException("Unknown signing key id: " + header.getKeyId());
+                            }
+                            return key;
+                        }
+                    })
+                    .build();
+        } else if (!jwtSecret.isBlank()) {
+            parser = Jwts.parser()
+                    .requireAudience(AUDIENCE)
+                    .requireIssuer(issuer())
+                    .verifyWith(Keys.hmacShaKeyFor(jwtSecret.getBytes(StandardCharsets.UTF_8)))
+                    .build();
+        } else {
+            System.err.println("supabase.auth.verification-mode=local but neither supabase.jwt-secret nor supabase.jwks-file is set, using remote lookups");
+        }
+    }
+
+    // Supabase issues session tokens from <project url>/auth/v1
+    private String issuer() {
+        String base = supabaseUrl.endsWith("/") ? supabaseUrl.substring(0, supabaseUrl.length() - 1) : supabaseUrl;
+        return base + "/auth/v1";
+    }
+
+    public boolean isEnabled() {
+        return parser != null;
+    }
+
+    /**
+     * Verify a Supabase access token locally
+     * @param token The Supabase access token
+     * @return A user node with id, email, user_metadata and app_metadata; empty if a required claim is missing
+     * @throws JwtException if the signature is invalid, the token has expired, or aud/iss do not match
+     */
+    public Optional<JsonNode> verify(String token) {
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+
+        String id = claims.getSubject();
+        String email = claims.get("email", String.class);
+        if (id == null || email == null || email.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<String, Object> user = new HashMap<>();
+        user.put("id", id);
+        user.put("email", email);
+        user.put("user_metadata", claims.get("user_metadata"));
+        user.put("app_metadata", claims.get("app_metadata"));
+        return Optional.of(objectMapper.valueToTree(user));
+    }
+}
@@ -0,0 +1,206 @@
+package com.classechobackend.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+
+import com.classechobackend.exception.BadRequestException;
+import com.classechobackend.exception.SupabaseUnavailableException;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Circuit breaker, bulkhead, deadline and retry policy for outbound Supabase calls.
+ * REST (PostgREST) and auth (GoTrue) calls get separate breakers and bulkheads so one
+ * degraded family does not shed traffic for the other. Only idempotent reads are retried.
+ * Client errors (4xx) surface as BadRequestException and never count against a breaker.
+ */
+@Component
+public class SupabaseResilience {
+
+    public enum Family {
+        REST("supabaseRest"),
+        AUTH("supabaseAuth");
+
+        private final String instanceName;
+
+        Family(String instanceName) {
+            this.instanceName = instanceName;
+        }
+    }
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final Counter retries;
+
+    private final int maxRetries;
+    private final long retryBaseMs;
+    private final long retryCapMs;
+    private final Duration callTimeout;
+
+    public SupabaseResilience(
+            MeterRegistry meterRegistry,
+            @Value("${supabase.resilience.failure-rate-threshold:50}") float failureRateThreshold,
+            @Value("${supabase.resilience.slow-call-threshold-ms:2000}") long slowCallThresholdMs,
+            @Value("${supabase.resilience.window-seconds:30}") int windowSeconds,
+            @Value("${supabase.resilience.minimum-calls:10}") int minimumCalls,
+            @Value("${supabase.resilience.open-state-wait-ms:15000}") long openStateWaitMs,
+            @Value("${supabase.resilience.max-concurrent-calls:40}") int maxConcurrentCalls,
+            @Value("${supabase.resilience.max-retries:2}") int maxRetries,
+            @Value("${supabase.resilience.retry-base-ms:100}") long retryBaseMs,
+            @Value("${supabase.resilience.retry-cap-ms:2000}") long retryCapMs,
+            @Value("${supabase.resilience.call-timeout-ms:10000}") long callTimeoutMs) {
+        this.maxRetries = maxRetries;
+        this.retryBaseMs = retryBaseMs;
+        this.retryCapMs = retryCapMs;
+        this.callTimeout = Duration.ofMillis(callTimeoutMs);
+
+        // Time-based window that also trips on a high share of slow calls, so the breaker
+        // reacts to Supabase slowing down and not only to outright errors
+        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.TIME_BASED)
+                .slidingWindowSize(windowSeconds)
+                .minimumNumberOfCalls(minimumCalls)
+                .failureRateThreshold(failureRateThreshold)
+                .slowCallDurationThreshold(Duration.ofMillis(slowCallThresholdMs))
+                .slowCallRateThreshold(80)
+                .waitDurationInOpenState(Duration.ofMillis(openStateWaitMs))
+                .permittedNumberOfCallsInHalfOpenState(3)
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                .ignoreExceptions(BadRequestException.class, BulkheadFullException.class)
+                .build();
+        BulkheadConfig bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO)
+                .build();
+
+        this.circuitBreakerRegistry = CircuitBreakerRegistry.of(circuitBreakerConfig);
+        this.bulkheadRegistry = BulkheadRegistry.of(bulkheadConfig);
+
+        for (Family family : Family.values()) {
+            CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(family.instanceName);
+            circuitBreaker.getEventPublisher().onStateTransition(event -> {
+                Counter.builder("supabase.circuitbreaker.transitions")
+                        .tag("name", family.instanceName)
+                        .tag("from", event.getStateTransition().getFromState().name())
+                        .tag("to", event.getStateTransition().getToState().name())
+                        .register(meterRegistry)
+                        .increment();
+                System.out.println("Supabase circuit breaker " + family.instanceName + ": " + event.getStateTransition());
+            });
+
+            Bulkhead bulkhead = bulkheadRegistry.bulkhead(family.instanceName);
+            Counter rejected = Counter.builder("supabase.bulkhead.rejected")
+                    .tag("name", family.instanceName)
+                    .register(meterRegistry);
+            bulkhead.getEventPublisher().onCallRejected(event -> rejected.increment());
+        }
+
+        // State, failure rate, buffered and not-permitted calls; available bulkhead permits
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+        this.retries = Counter.builder("supabase.retries").register(meterRegistry);
+    }
+
+    /**
+     * Guard a non-idempotent call: breaker and bulkhead, no retries
+     */
+    public <T> Mono<T> guard(Family family, Mono<T> call) {
+        return withDeadline(family, call)
+                .transformDeferred(BulkheadOperator.of(bulkheadRegistry.bulkhead(family.instanceName)))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreakerRegistry.circuitBreaker(family.instanceName)))
+                .onErrorMap(SupabaseResilience::isRejection, e -> rejected(family, e));
+    }
+
+    /**
+     * Guard an idempotent read: breaker and bulkhead, plus bounded retries with decorrelated jitter.
+     * Each attempt passes through the breaker, so retries stop as soon as it opens.
+     */
+    public <T> Mono<T> guardIdempotent(Family family, Mono<T> call) {
+        return withDeadline(family, call)
+                .transformDeferred(BulkheadOperator.of(bulkheadRegistry.bulkhead(family.instanceName)))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreakerRegistry.circuitBreaker(family.instanceName)))
+                .retryWhen(decorrelatedJitter())
+                .onErrorMap(SupabaseResilience::isRejection, e -> rejected(family, e));
+    }
+
+    // The client's response timeout only bounds the gap between reads, so a slowly trickling body could hold a
+    // connection and a bulkhead permit indefinitely; this bounds each attempt from subscription to last byte.
+    // Cancelling the exchange releases both, and the breaker counts the timeout as a failure.
+    private <T> Mono<T> withDeadline(Family family, Mono<T> call) {
+        return call.timeout(callTimeout, Mono.error(() -> new SupabaseUnavailableException(
+                "Supabase " + family.name().toLowerCase() + " call timed out after " + callTimeout.toMillis() + " ms")));
+    }
+
+    /**
+     * Map an error response to an exception: 5xx and 429 are transient, everything else is the caller's fault
+     */
+    public static Mono<Throwable> toException(ClientResponse response, String prefix) {
+        return response.bodyToMono(String.class)
+                .defaultIfEmpty("")
+                .<Throwable>map(errorBody -> {
+                    int status = response.statusCode().value();
+                    if (response.statusCode().is5xxServerError() || status == 429) {
+                        return new SupabaseUnavailableException(prefix + status + " " + errorBody);
+                    }
+                    return new BadRequestException(prefix + errorBody);
+                });
+    }
+
+    // sleep = min(cap, random(base, previous * 3)), state kept per subscription
+    private Retry decorrelatedJitter() {
+        return Retry.from(signals -> {
+            long[] previous = {retryBaseMs};
+            return signals.concatMap(signal -> {
+                Throwable failure = signal.failure();
+                if (signal.totalRetries() >= maxRetries || !isTransient(failure)) {
+                    return Mono.error(failure);
+                }
+                long upper = Math.max(retryBaseMs, Math.min(retryCapMs, previous[0] * 3));
+                long delay = ThreadLocalRandom.current().nextLong(retryBaseMs, upper + 1);
+                previous[0] = delay;
+                retries.increment();
+                return Mono.delay(Duration.ofMillis(delay));
+            });
+        });
+    }
+
+    private static boolean isTransient(Throwable failure) {
+        return failure instanceof SupabaseUnavailableException
+                || failure instanceof WebClientRequestException
+                || failure instanceof TimeoutException
+                || failure instanceof ReadTimeoutException
+                || failure instanceof IOException;
+    }
+
+    private static boolean isRejection(Throwable failure) {
+        return failure instanceof CallNotPermittedException || failure instanceof BulkheadFullException;
+    }
+
+    private static SupabaseUnavailableException rejected(Family family, Throwable failure) {
+        String reason = failure instanceof CallNotPermittedException ? "circuit open" : "too many concurrent calls";
+        return new SupabaseUnavailableException("Supabase " + family.name().toLowerCase() + " unavailable (" + reason + ")", failure);
+    }
+}
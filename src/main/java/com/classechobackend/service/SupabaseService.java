@@ -1,23 +1,41 @@
 package com.classechobackend.service;
 
-import com.classechobackend.exception.BadRequestException;
+import com.classechobackend.service.SupabaseResilience.Family;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 @Service
 public class SupabaseService {
 
+    private static final ParameterizedTypeReference<Map<String, Object>> ROW_TYPE = new ParameterizedTypeReference<>() {};
+
     private final WebClient webClient;
+    private final SupabaseResilience resilience;
+
+    @Value("${supabase.bulk.chunk-size:500}")
+    private int bulkChunkSize;
+
+    @Value("${supabase.bulk.parallelism:1}")
+    private int bulkParallelism;
+
+    @Value("${supabase.bulk.page-size:1000}")
+    private int pageSize;
 
     @Autowired
-    public SupabaseService(WebClient supabaseWebClient) {
+    public SupabaseService(WebClient supabaseWebClient, SupabaseResilience resilience) {
         this.webClient = supabaseWebClient;
+        this.resilience = resilience;
     }
 
     /**
@@ -27,18 +45,14 @@ public class SupabaseService {
      * @return List of records
      */
     public Mono<JsonNode> select(String table, String select) {
-        return webClient.get()
+        return resilience.guardIdempotent(Family.REST, webClient.get()
                 .uri(uriBuilder -> uriBuilder
                         .path("/rest/v1/" + table)
                         .queryParam("select", select)
                         .build())
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase error: "))
+                .bodyToMono(JsonNode.class));
     }
 
     /**
@@ -48,17 +62,13 @@ public class SupabaseService {
      * @return The inserted record
      */
     public Mono<JsonNode> insert(String table, Map<String, Object> data) {
-        return webClient.post()
+        return resilience.guard(Family.REST, webClient.post()
                 .uri("/rest/v1/" + table)
                 .header("Prefer", "return=representation")
                 .bodyValue(data)
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase error: "))
+                .bodyToMono(JsonNode.class));
     }
 
     /**
@@ -69,17 +79,13 @@ public class SupabaseService {
      * @return The updated records
      */
     public Mono<JsonNode> update(String table, String filter, Map<String, Object> data) {
-        return webClient.patch()
+        return resilience.guard(Family.REST, webClient.patch()
                 .uri("/rest/v1/" + table + "?" + filter)
                 .header("Prefer", "return=representation")
                 .bodyValue(data)
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase error: "))
+                .bodyToMono(JsonNode.class));
     }
 
     /**
@@ -89,16 +95,12 @@ public class SupabaseService {
      * @return The deleted records
      */
     public Mono<JsonNode> delete(String table, String filter) {
-        return webClient.delete()
+        return resilience.guard(Family.REST, webClient.delete()
                 .uri("/rest/v1/" + table + "?" + filter)
                 .header("Prefer", "return=representation")
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase error: " + errorBody)))
-                )
-                .bodyToMono(JsonNode.class);
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase error: "))
+                .bodyToMono(JsonNode.class));
     }
 
     /**
@@ -109,7 +111,7 @@ public class SupabaseService {
      * @return List of records
      */
     public Mono<JsonNode> query(String table, String select, Map<String, String> filters) {
-        return webClient.get()
+        return resilience.guardIdempotent(Family.REST, webClient.get()
                 .uri(uriBuilder -> {
                     var builder = uriBuilder.path("/rest/v1/" + table)
                             .queryParam("select", select);
@@ -117,11 +119,136 @@ public class SupabaseService {
                     return builder.build();
                 })
                 .retrieve()
-                .onStatus(HttpStatusCode::isError, response ->
-                        response.bodyToMono(String.class)
-                                .flatMap(errorBody -> Mono.error(
-                                        new BadRequestException("Supabase error: " + errorBody)))
-                )
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase error: "))
+                .bodyToMono(JsonNode.class));
+    }
+
+    /**
+     * Insert many records, one request per chunk instead of one per row
+     * @param table The table name
+     * @param rows The records to insert
+     * @return One result per chunk, in chunk order; a failed chunk does not stop the others
+     */
+    public Flux<ChunkResult> insertAll(String table, List<Map<String, Object>> rows) {
+        return writeChunks(rows, chunk -> resilience.guard(Family.REST,
+                postChunk(table, chunk, "return=representation", null)));
+    }
+
+    /**
+     * Insert or update many records, merging on the given conflict columns.
+     * Upserts are idempotent, so chunks are retried on transient failures.
+     * @param table The table name
+     * @param rows The records to upsert
+     * @param onConflict Comma-separated conflict columns (e.g., "student_id,course_id")
+     * @return One result per chunk, in chunk order
+     */
+    public Flux<ChunkResult> upsert(String table, List<Map<String, Object>> rows, String onConflict) {
+        return writeChunks(rows, chunk -> resilience.guardIdempotent(Family.REST,
+                postChunk(table, chunk, "resolution=merge-duplicates,return=representation", onConflict)));
+    }
+
+    /**
+     * Stream every matching record, paging with Range headers instead of buffering the whole table
+     * @param table The table name
+     * @param select Columns to select
+     * @param order Order clause for stable paging (e.g., "id.asc")
+     * @return Records in page order
+     */
+    public Flux<JsonNode> selectAll(String table, String select, String order) {
+        return fetchPage(table, select, order, 0)
+                .expand(page -> page.rows.size() < pageSize
+                        ? Mono.empty()
+                        : fetchPage(table, select, order, page.offset + pageSize))
+                .concatMapIterable(page -> page.rows);
+    }
+
+    private Flux<ChunkResult> writeChunks(List<Map<String, Object>> rows,
+                                          Function<List<Map<String, Object>>, Mono<JsonNode>> writer) {
+        return Flux.fromIterable(rows)
+                .buffer(bulkChunkSize)
+                .index()
+                // flatMapSequential runs up to bulkParallelism chunks at once but emits results in order
+                .flatMapSequential(indexed -> {
+                    int index = indexed.getT1().intValue();
+                    List<Map<String, Object>> chunk = indexed.getT2();
+                    return writer.apply(chunk)
+                            .map(written -> ChunkResult.success(index, chunk.size(), written))
+                            .onErrorResume(e -> Mono.just(ChunkResult.failure(index, chunk.size(), e.getMessage())));
+                }, bulkParallelism);
+    }
+
+    // The Jackson encoder writes the Flux as a JSON array element by element, no intermediate array is built
+    private Mono<JsonNode> postChunk(String table, List<Map<String, Object>> chunk, String prefer, String onConflict) {
+        return webClient.post()
+                .uri(uriBuilder -> {
+                    var builder = uriBuilder.path("/rest/v1/" + table);
+                    if (onConflict != null) {
+                        builder.queryParam("on_conflict", onConflict);
+                    }
+                    return builder.build();
+                })
+                .header("Prefer", prefer)
+                .body(Flux.fromIterable(chunk), ROW_TYPE)
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase error: "))
                 .bodyToMono(JsonNode.class);
     }
+
+    private Mono<Page> fetchPage(String table, String select, String order, long offset) {
+        return resilience.guardIdempotent(Family.REST, webClient.get()
+                .uri(uriBuilder -> {
+                    var builder = uriBuilder.path("/rest/v1/" + table)
+                            .queryParam("select", select);
+                    if (order != null) {
+                        builder.queryParam("order", order);
+                    }
+                    return builder.build();
+                })
+                .header("Range-Unit", "items")
+                .header("Range", offset + "-" + (offset + pageSize - 1))
+                .retrieve()
+                .onStatus(HttpStatusCode::isError, response -> SupabaseResilience.toException(response, "Supabase error: "))
+                .bodyToMono(JsonNode.class)
+                .map(rows -> new Page(offset, rows)));
+    }
+
+    private static final class Page {
+        private final long offset;
+        private final JsonNode rows;
+
+        private Page(long offset, JsonNode rows) {
+            this.offset = offset;
+            this.rows = rows;
+        }
+    }
+
+    public static final class ChunkResult {
+        private final int index;
+        private final int rowCount;
+        private final boolean success;
+        private final JsonNode written;
+        private final String error;
+
+        private ChunkResult(int index, int rowCount, boolean success, JsonNode written, String error) {
+            this.index = index;
+            this.rowCount = rowCount;
+            this.success = success;
+            this.written = written;
+            this.error = error;
+        }
+
+        static ChunkResult success(int index, int rowCount, JsonNode written) {
+            return new ChunkResult(index, rowCount, true, written, null);
+        }
+
+        static ChunkResult failure(int index, int rowCount, String error) {
+            return new ChunkResult(index, rowCount, false, null, error);
+        }
+
+        public int getIndex() { return index; }
+        public int getRowCount() { return rowCount; }
+        public boolean isSuccess() { return success; }
+        public JsonNode getWritten() { return written; }
+        public String getError() { return error; }
+    }
 }
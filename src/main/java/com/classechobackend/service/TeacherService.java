@@ -21,6 +21,12 @@ public class TeacherService {
     @Autowired
     private TeacherRepository teacherRepository;
 
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private IdentityResolver identityResolver;
+
     public TeacherProfileDTO getTeacherProfile(UUID userId) {
         Teacher teacher = teacherRepository.findByUserId(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Teacher profile not found for user"));
@@ -77,6 +83,9 @@ public class TeacherService {
                 .orElseThrow(() -> new ResourceNotFoundException("Teacher profile not found for user"));
         
         teacherRepository.delete(teacher);
+        identityResolver.evict(userId);
+        // The database detaches the teacher's courses, which the cached Course rows do not see
+        referenceDataCache.evictCoursesAfterCommit();
     }
 
     private TeacherProfileDTO mapToDTO(Teacher teacher) {
@@ -29,6 +29,18 @@ public class UserService {
     @Autowired
     private TeacherRepository teacherRepository;
 
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    private IdentityResolver identityResolver;
+
+    @Autowired
+    private SessionRosterRegistry sessionRosters;
+
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
     public User createUser(String email, String name, String role) {
         if (userRepository.existsByEmail(email)) {
             throw new BadRequestException("Email already exists");
@@ -85,5 +97,15 @@ public class UserService {
     public void deleteUser(UUID userId) {
         User user = getUserById(userId);
         userRepository.delete(user);
+        identityResolver.evict(userId);
+        refreshTokenService.revokeAllForUser(userId);
+        if (user.getTeacher() != null) {
+            // Cascades to the teacher row, whose courses the cached Course rows still point at
+            referenceDataCache.evictCoursesAfterCommit();
+        }
+        if (user.getStudent() != null) {
+            // Cascades to the student's enrollments
+            sessionRosters.enrollmentsChanged();
+        }
     }
 }
@@ -0,0 +1,55 @@
+-- Schema objects Hibernate does not create (ddl-auto=none). Runs on every startup, so every statement must be idempotent.
+
+-- Expiry sweep (AttendanceSessionRepository.deactivateExpired) only ever looks at active sessions
+CREATE INDEX IF NOT EXISTS idx_attendance_sessions_active_expires_at
+    ON attendance_sessions (expires_at)
+    WHERE is_active;
+
+-- One active QR session per class. Older duplicates left by concurrent generation are deactivated
+-- first (newest wins) so the unique index can be built
+UPDATE attendance_sessions s
+    SET is_active = false
+    WHERE s.is_active
+      AND EXISTS (
+          SELECT 1 FROM attendance_sessions newer
+          WHERE newer.is_active
+            AND newer.course_id = s.course_id
+            AND newer.date = s.date
+            AND newer.section = s.section
+            AND (newer.created_at, newer.id) > (s.created_at, s.id)
+      );
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_attendance_sessions_active_class
+    ON attendance_sessions (course_id, date, section)
+    WHERE is_active;
+
+-- Keyset pagination: each page seeks past the previous page's (sort key, id) in index order
+CREATE INDEX IF NOT EXISTS idx_attendance_student_date_id
+    ON attendance (student_id, date DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_grades_course_created_id
+    ON grades (course_id, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_enrollments_course_enrolled_id
+    ON course_enrollments (course_id, enrolled_at, id);
+
+CREATE INDEX IF NOT EXISTS idx_materials_uploaded_id
+    ON course_materials (uploaded_at DESC, id DESC);
+
+-- QR scans the write-behind ingestion pipeline gave up on (out of retries or queue space).
+-- Kept for follow-up since the student was already handed a PENDING receipt
+CREATE TABLE IF NOT EXISTS attendance_dead_letters (
+    id UUID PRIMARY KEY,
+    attendance_id UUID NOT NULL,
+    student_id UUID NOT NULL,
+    course_id UUID NOT NULL,
+    date DATE NOT NULL,
+    section VARCHAR(255),
+    qr_code TEXT,
+    marked_at TIMESTAMP,
+    reason TEXT,
+    failed_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_attendance_dead_letters_course_date
+    ON attendance_dead_letters (course_id, date);
@@ -0,0 +1,169 @@
+package com.classechobackend.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Back-pressure of the Supabase connection pool against a stand-in server that holds every request open.
+ */
+class SupabaseConfigTest {
+
+    private static final int MAX_CONNECTIONS = 2;
+    private static final int PENDING_ACQUIRE_MAX = 2;
+    private static final long PENDING_ACQUIRE_TIMEOUT_MS = 300;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ConnectionProvider connectionProvider;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/slow", this::holdUntilReleased);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        release.countDown();
+        if (connectionProvider != null) {
+            connectionProvider.dispose();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void requestsBeyondPoolAndPendingQueueFailFastInsteadOfQueueing() {
+        WebClient webClient = webClient();
+        int total = MAX_CONNECTIONS + PENDING_ACQUIRE_MAX + 4;
+
+        // Let the held requests finish only after every waiting request has had time to give up
+        Schedulers.boundedElastic().schedule(release::countDown, PENDING_ACQUIRE_TIMEOUT_MS * 5, TimeUnit.MILLISECONDS);
+
+        long started = System.nanoTime();
+        List<String> outcomes = Flux.range(0, total)
+                .flatMap(i -> webClient.get().uri("/slow")
+                        .retrieve()
+                        .bodyToMono(String.class)
+                        .onErrorResume(e -> Mono.just(rootCause(e).getClass().getSimpleName())), total)
+                .collectList()
+                .block(Duration.ofSeconds(20));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(outcomes).hasSize(total);
+        // Only max-connections requests ever reach the server
+        assertThat(outcomes).filteredOn("ok"::equals).hasSize(MAX_CONNECTIONS);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(MAX_CONNECTIONS);
+        // The rest are refused: past the pending queue immediately, inside it once the acquire timeout passes
+        assertThat(outcomes).filteredOn(outcome -> !"ok".equals(outcome))
+                .hasSize(total - MAX_CONNECTIONS)
+                .allMatch(outcome -> outcome.equals("PoolAcquirePendingLimitException")
+                        || outcome.equals("PoolAcquireTimeoutException"));
+        assertThat(outcomes).filteredOn("PoolAcquirePendingLimitException"::equals)
+                .hasSizeGreaterThanOrEqualTo(total - MAX_CONNECTIONS - PENDING_ACQUIRE_MAX);
+        assertThat(elapsedMs).isLessThan(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @Test
+    void waitingRequestsTimeOutWhileThePoolIsBusy() throws InterruptedException {
+        WebClient webClient = webClient();
+
+        // Occupy every connection
+        for (int i = 0; i < MAX_CONNECTIONS; i++) {
+            webClient.get().uri("/slow").retrieve().bodyToMono(String.class).subscribe(body -> { }, error -> { });
+        }
+        awaitInFlight(MAX_CONNECTIONS);
+
+        long started = System.nanoTime();
+        String outcome = webClient.get().uri("/slow")
+                .retrieve()
+                .bodyToMono(String.class)
+                .onErrorResume(e -> Mono.just(rootCause(e).getClass().getSimpleName()))
+                .block(Duration.ofSeconds(10));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertThat(outcome).isEqualTo("PoolAcquireTimeoutException");
+        assertThat(waitedMs).isBetween(PENDING_ACQUIRE_TIMEOUT_MS / 2, PENDING_ACQUIRE_TIMEOUT_MS * 10);
+    }
+
+    private WebClient webClient() {
+        SupabaseConfig config = new SupabaseConfig();
+        ReflectionTestUtils.setField(config, "supabaseUrl", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(config, "serviceRoleKey", "test-key");
+        ReflectionTestUtils.setField(config, "maxConnections", MAX_CONNECTIONS);
+        ReflectionTestUtils.setField(config, "pendingAcquireMaxCount", PENDING_ACQUIRE_MAX);
+        ReflectionTestUtils.setField(config, "pendingAcquireTimeoutMs", PENDING_ACQUIRE_TIMEOUT_MS);
+        ReflectionTestUtils.setField(config, "maxIdleTimeMs", 30000L);
+        ReflectionTestUtils.setField(config, "maxLifeTimeMs", 300000L);
+        ReflectionTestUtils.setField(config, "connectTimeoutMs", 1000);
+        ReflectionTestUtils.setField(config, "responseTimeoutMs", 15000L);
+
+        connectionProvider = config.supabaseConnectionProvider();
+        return config.supabaseWebClient(connectionProvider);
+    }
+
+    private void holdUntilReleased(HttpExchange exchange) throws IOException {
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            release.await(15, TimeUnit.SECONDS);
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private void awaitInFlight(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(inFlight.get()).isEqualTo(expected);
+    }
+
+    private static Throwable rootCause(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,176 @@
+package com.classechobackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.classechobackend.model.AttendanceSession;
+import com.classechobackend.model.Course;
+import com.classechobackend.model.Teacher;
+import com.classechobackend.repository.AttendanceRepository;
+import com.classechobackend.repository.CourseEnrollmentRepository;
+
+/**
+ * Lookups and transaction-bound registration and removal of the in-memory active session registry.
+ */
+class ActiveSessionRegistryTest {
+
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 2);
+
+    private final ActiveSessionRegistry registry = new ActiveSessionRegistry(
+            new SessionRosterRegistry(mock(CourseEnrollmentRepository.class), mock(AttendanceRepository.class)));
+
+    private final UUID courseId = UUID.randomUUID();
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void registeredSessionIsFoundByQrCodeAndId() {
+        AttendanceSession session = session("A", 5);
+
+        ActiveSessionRegistry.ActiveSession active = registry.register(session);
+
+        assertThat(registry.findByQrCode(session.getQrCode())).containsSame(active);
+        assertThat(registry.findById(session.getId())).containsSame(active);
+        assertThat(active.getCourseId()).isEqualTo(courseId);
+        assertThat(active.getTeacherId()).isEqualTo(session.getTeacher().getId());
+        assertThat(active.getSection()).isEqualTo("A");
+        assertThat(active.getDate()).isEqualTo(DATE);
+        assertThat(registry.findByQrCode("ATT-unknown")).isEmpty();
+
+        registry.remove(session.getId());
+        assertThat(registry.findByQrCode(session.getQrCode())).isEmpty();
+        assertThat(registry.findById(session.getId())).isEmpty();
+        assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    void registrationWaitsForCommitAndIsDroppedOnRollback() {
+        AttendanceSession committed = session("A", 5);
+        AttendanceSession rolledBack = session("B", 5);
+
+        TransactionSynchronizationManager.initSynchronization();
+        registry.register(committed);
+        assertThat(registry.findById(committed.getId())).isEmpty();
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(registry.findById(committed.getId())).isPresent();
+
+        TransactionSynchronizationManager.initSynchronization();
+        registry.register(rolledBack);
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(registry.findById(rolledBack.getId())).isEmpty();
+    }
+
+    @Test
+    void replacedSessionsLeaveOnlyWhenTheSwapCommits() {
+        AttendanceSession current = session("A", 5);
+        AttendanceSession otherSection = session("B", 5);
+        registry.register(current);
+        registry.register(otherSection);
+
+        // A swap that rolls back leaves the live session registered
+        TransactionSynchronizationManager.initSynchronization();
+        registry.removeFor(courseId, DATE, "A");
+        assertThat(registry.findById(current.getId())).isPresent();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertThat(registry.findById(current.getId())).isPresent();
+
+        // A committed swap drops the sessions it replaced, but not one registered after it started
+        AttendanceSession newer = session("A", 5);
+        TransactionSynchronizationManager.initSynchronization();
+        registry.removeFor(courseId, DATE, "A");
+        registry.register(newer);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(registry.findById(current.getId())).isEmpty();
+        assertThat(registry.findByQrCode(current.getQrCode())).isEmpty();
+        assertThat(registry.findById(newer.getId())).isPresent();
+        assertThat(registry.findById(otherSection.getId())).isPresent();
+    }
+
+    @Test
+    void closedSessionIsRefusedAndCannotBeRegisteredAgain() {
+        AttendanceSession closing = session("A", 5);
+        AttendanceSession rolledBack = session("B", 5);
+        registry.register(closing);
+        registry.register(rolledBack);
+
+        // Refused as soon as the close starts, though the entry is only dropped once the deactivation commits
+        registry.close(closing.getId());
+        assertThat(registry.isClosed(closing.getId())).isTrue();
+        assertThat(registry.findById(closing.getId())).isEmpty();
+        assertThat(registry.findByQrCode(closing.getQrCode())).isEmpty();
+
+        TransactionSynchronizationManager.initSynchronization();
+        registry.removeClosed(closing.getId());
+        assertThat(registry.size()).isEqualTo(2);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertThat(registry.size()).isEqualTo(1);
+
+        // A reader that still saw the row active cannot bring it back
+        registry.register(closing);
+        assertThat(registry.findById(closing.getId())).isEmpty();
+        assertThat(registry.size()).isEqualTo(1);
+
+        // A close that failed reopens the session
+        registry.close(rolledBack.getId());
+        registry.reopen(rolledBack.getId());
+        assertThat(registry.findById(rolledBack.getId())).isPresent();
+    }
+
+    @Test
+    void expiredSessionsAreSwept() {
+        AttendanceSession expired = session("A", -1);
+        AttendanceSession live = session("B", 5);
+        registry.register(expired);
+        registry.register(live);
+
+        assertThat(registry.findById(expired.getId())).get().matches(ActiveSessionRegistry.ActiveSession::isExpired);
+        assertThat(registry.removeExpired()).isEqualTo(1);
+        assertThat(registry.findById(expired.getId())).isEmpty();
+        assertThat(registry.findById(live.getId())).isPresent();
+    }
+
+    // Run the registered callbacks the way a transaction manager finishing with that status would
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private AttendanceSession session(String section, long expiresInMinutes) {
+        Course course = new Course();
+        course.setId(courseId);
+        Teacher teacher = new Teacher();
+        teacher.setId(UUID.randomUUID());
+
+        AttendanceSession session = new AttendanceSession();
+        session.setId(UUID.randomUUID());
+        session.setCourse(course);
+        session.setTeacher(teacher);
+        session.setQrCode("ATT-" + UUID.randomUUID());
+        session.setSection(section);
+        session.setDate(DATE);
+        session.setExpiresAt(LocalDateTime.now().plusMinutes(expiresInMinutes));
+        return session;
+    }
+}
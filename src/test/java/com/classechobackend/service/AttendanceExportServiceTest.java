@@ -0,0 +1,186 @@
+package com.classechobackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.classechobackend.model.Attendance;
+import com.classechobackend.repository.AttendanceRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class AttendanceExportServiceTest {
+
+    private static final UUID COURSE_ID = UUID.randomUUID();
+    private static final int STUDENTS = 20_000;
+    private static final int DAYS = 30;
+    // The service's 64K-char BufferedWriter plus the encoder's own 8K byte buffer
+    private static final int WRITER_BUFFER = 64 * 1024 + 8 * 1024;
+
+    private final AttendanceRepository attendanceRepository = mock(AttendanceRepository.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AttendanceExportService exportService = new AttendanceExportService();
+
+    private final List<LocalDate> dates = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(exportService, "attendanceRepository", attendanceRepository);
+        ReflectionTestUtils.setField(exportService, "objectMapper", objectMapper);
+
+        LocalDate first = LocalDate.of(2026, 1, 5);
+        for (int i = 0; i < DAYS; i++) {
+            dates.add(first.plusDays(i));
+        }
+        when(attendanceRepository.findDistinctDatesByCourseId(COURSE_ID)).thenReturn(dates);
+    }
+
+    @Test
+    void largeCsvRegisterIsStreamedWithBoundedBufferingAndCorrectRows() throws IOException {
+        CheckingOutput out = new CheckingOutput(line -> {
+            String[] fields = line.split(",", -1);
+            assertThat(fields).hasSize(3 + DAYS);
+            return fields[0];
+        });
+        when(attendanceRepository.streamRegisterByCourseId(COURSE_ID)).thenReturn(register(out));
+
+        exportService.exportRegister(COURSE_ID, AttendanceExportService.Format.CSV, out);
+
+        assertThat(out.lines).isEqualTo(STUDENTS + 1);
+        assertThat(out.header).startsWith("student_id,roll_no,name," + dates.get(0)).endsWith(dates.get(DAYS - 1).toString());
+        // Rows handed over but not yet written never exceed what fits in the writer buffer
+        assertThat(out.maxLagRows).isLessThanOrEqualTo(WRITER_BUFFER / out.shortestLine + 1);
+    }
+
+    @Test
+    void largeNdjsonRegisterIsStreamedWithBoundedBufferingAndCorrectRows() throws IOException {
+        CheckingOutput out = new CheckingOutput(line -> {
+            JsonNode row = objectMapper.readTree(line);
+            assertThat(row.get("attendance").size()).isEqualTo(DAYS);
+            return row.get("studentId").asText();
+        });
+        out.expectHeader = false;
+        when(attendanceRepository.streamRegisterByCourseId(COURSE_ID)).thenReturn(register(out));
+
+        exportService.exportRegister(COURSE_ID, AttendanceExportService.Format.NDJSON, out);
+
+        assertThat(out.lines).isEqualTo(STUDENTS);
+        assertThat(out.maxLagRows).isLessThanOrEqualTo(WRITER_BUFFER / out.shortestLine + 1);
+    }
+
+    @Test
+    void csvQuotesSeparatorsQuotesAndLineBreaks() throws IOException {
+        UUID studentId = UUID.randomUUID();
+        when(attendanceRepository.streamRegisterByCourseId(COURSE_ID)).thenReturn(Stream.of(
+                new Object[] {studentId, "R,1", "Ann \"Jo\"\r\nLee", dates.get(0), Attendance.AttendanceStatus.PRESENT},
+                new Object[] {UUID.randomUUID(), "R2", "Carriage\rReturn", dates.get(0), Attendance.AttendanceStatus.ABSENT},
+                new Object[] {UUID.randomUUID(), "R3", "Plain", dates.get(0), Attendance.AttendanceStatus.ABSENT}
+        ));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportRegister(COURSE_ID, AttendanceExportService.Format.CSV, out);
+        String csv = out.toString(StandardCharsets.UTF_8);
+
+        assertThat(csv).contains(studentId + ",\"R,1\",\"Ann \"\"Jo\"\"\r\nLee\",PRESENT,");
+        assertThat(csv).contains(",R2,\"Carriage\rReturn\",ABSENT,");
+        assertThat(csv).contains(",R3,Plain,ABSENT,");
+    }
+
+    @Test
+    void cellsOutsideTheColumnsAreSkippedAndStudentsWithoutAUserKeepTheirRow() throws IOException {
+        UUID studentId = UUID.randomUUID();
+        when(attendanceRepository.streamRegisterByCourseId(COURSE_ID)).thenReturn(Stream.of(
+                new Object[] {studentId, "R1", null, dates.get(0), Attendance.AttendanceStatus.PRESENT},
+                new Object[] {studentId, "R1", null, dates.get(DAYS - 1).plusDays(1), Attendance.AttendanceStatus.ABSENT}
+        ));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportRegister(COURSE_ID, AttendanceExportService.Format.CSV, out);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines[1]).isEqualTo(studentId + ",R1,,PRESENT" + ",".repeat(DAYS - 1));
+    }
+
+    // Lazily generated register cells, ordered like the repository query; records how far the output lags behind
+    private Stream<Object[]> register(CheckingOutput out) {
+        return IntStream.range(0, STUDENTS * DAYS).mapToObj(i -> {
+            int student = i / DAYS;
+            int day = i % DAYS;
+            if (day == 0) {
+                out.studentStarted(student);
+            }
+            return new Object[] {
+                    studentId(student),
+                    String.format("R%06d", student),
+                    "Student " + student,
+                    dates.get(day),
+                    day % 3 == 0 ? Attendance.AttendanceStatus.ABSENT : Attendance.AttendanceStatus.PRESENT
+            };
+        });
+    }
+
+    private static UUID studentId(int student) {
+        return new UUID(0, student);
+    }
+
+    private interface LineCheck {
+        String studentIdOf(String line) throws IOException;
+    }
+
+    // Checks each line as it arrives instead of keeping the output, and tracks how many rows it lags behind the cursor
+    private static final class CheckingOutput extends OutputStream {
+        private final LineCheck check;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+        private boolean expectHeader = true;
+
+        private long lines;
+        private String header;
+        private int shortestLine = Integer.MAX_VALUE;
+        private long maxLagRows;
+
+        private CheckingOutput(LineCheck check) {
+            this.check = check;
+        }
+
+        // When the cursor reaches a student, every earlier student but the previous one has been handed to the writer
+        private void studentStarted(int student) {
+            long writtenRows = lines - (expectHeader && lines > 0 ? 1 : 0);
+            maxLagRows = Math.max(maxLagRows, student - 1 - writtenRows);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b != '\n') {
+                line.write(b);
+                return;
+            }
+
+            String text = line.toString(StandardCharsets.UTF_8);
+            line.reset();
+            if (expectHeader && lines == 0) {
+                header = text;
+            } else {
+                shortestLine = Math.min(shortestLine, text.length() + 1);
+                long row = lines - (expectHeader ? 1 : 0);
+                assertThat(check.studentIdOf(text)).isEqualTo(studentId((int) row).toString());
+            }
+            lines++;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.classechobackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.classechobackend.model.Attendance;
+import com.classechobackend.model.Course;
+import com.classechobackend.model.Student;
+import com.classechobackend.repository.AttendanceRepository;
+import com.classechobackend.repository.CourseEnrollmentRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Failure handling of the write-behind pipeline: bad rows are isolated, failed scans back off before a retry.
+ */
+class AttendanceIngestionServiceTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 2);
+
+    private final AttendanceRepository attendanceRepository = mock(AttendanceRepository.class);
+    private final SessionRosterRegistry sessionRosters = mock(SessionRosterRegistry.class);
+    private final UUID courseId = UUID.randomUUID();
+    // Rows of every statement that went through
+    private final List<Attendance> written = new CopyOnWriteArrayList<>();
+
+    private AttendanceIngestionService ingestion;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (ingestion != null) {
+            ingestion.stop();
+        }
+    }
+
+    @Test
+    void badRowIsIsolatedAndOnlyItIsDeadLettered() {
+        // Flusher not started, every write below is a synchronous flush
+        AttendanceIngestionService ingestion = ingestion(60_000);
+        List<Attendance> scans = scans(200);
+        Attendance bad = scans.get(137);
+        AtomicInteger statements = new AtomicInteger();
+        when(attendanceRepository.batchUpsertScans(anyList())).thenAnswer(invocation -> {
+            List<Attendance> rows = invocation.getArgument(0);
+            statements.incrementAndGet();
+            if (rows.contains(bad)) {
+                throw new DataIntegrityViolationException("violates foreign key constraint");
+            }
+            written.addAll(rows);
+            return filled(rows.size());
+        });
+        scans.forEach(ingestion::submit);
+
+        ingestion.flushNow();
+
+        assertThat(written).hasSize(199).doesNotContain(bad);
+        // Halving 200 rows down to the bad one takes two statements per level, not one per row
+        assertThat(statements.get()).isLessThanOrEqualTo(1 + 2 * 8);
+        assertThat(ingestion.getQueueSize()).isEqualTo(1);
+        verify(attendanceRepository, never()).insertDeadLetters(anyList(), anyString());
+
+        // Each flush gives the waiting row one more attempt, the last one dead-letters it alone
+        ingestion.flushNow();
+        ingestion.flushNow();
+
+        verify(attendanceRepository).insertDeadLetters(List.of(bad), "Failed after " + MAX_ATTEMPTS + " attempts: violates foreign key constraint");
+        verify(sessionRosters).scanDropped(courseId, DATE, "A", bad.getStudent().getId());
+        assertThat(ingestion.getQueueSize()).isZero();
+    }
+
+    @Test
+    void databaseOutageBacksOffInsteadOfSplittingOrRetryingAtOnce() {
+        ingestion = ingestion(60_000);
+        AtomicInteger calls = new AtomicInteger();
+        when(attendanceRepository.batchUpsertScans(anyList())).thenAnswer(invocation -> {
+            List<Attendance> rows = invocation.getArgument(0);
+            if (calls.incrementAndGet() == 1) {
+                throw new QueryTimeoutException("canceling statement due to statement timeout");
+            }
+            written.addAll(rows);
+            return filled(rows.size());
+        });
+        ingestion.start();
+        List<Attendance> scans = scans(20);
+        scans.forEach(ingestion::submit);
+
+        // One statement for the whole batch, then nothing while its backoff runs
+        verify(attendanceRepository, timeout(5_000).times(1)).batchUpsertScans(anyList());
+        verify(attendanceRepository, after(1_000).times(1)).batchUpsertScans(anyList());
+        assertThat(ingestion.getQueueSize()).isEqualTo(20);
+
+        // A synchronous flush does not wait for the backoff
+        ingestion.flushNow();
+        assertThat(written).containsExactlyInAnyOrderElementsOf(scans);
+        verify(attendanceRepository, never()).insertDeadLetters(anyList(), any());
+    }
+
+    @Test
+    void failedScansAreRetriedOnceTheirBackoffHasPassed() {
+        ingestion = ingestion(50);
+        AtomicInteger calls = new AtomicInteger();
+        when(attendanceRepository.batchUpsertScans(anyList())).thenAnswer(invocation -> {
+            List<Attendance> rows = invocation.getArgument(0);
+            if (calls.incrementAndGet() == 1) {
+                throw new QueryTimeoutException("canceling statement due to statement timeout");
+            }
+            written.addAll(rows);
+            return filled(rows.size());
+        });
+        ingestion.start();
+        List<Attendance> scans = scans(5);
+        scans.forEach(ingestion::submit);
+
+        verify(attendanceRepository, timeout(5_000).times(2)).batchUpsertScans(anyList());
+        assertThat(written).containsExactlyInAnyOrderElementsOf(scans);
+    }
+
+    private AttendanceIngestionService ingestion(long retryBackoffMs) {
+        return new AttendanceIngestionService(attendanceRepository, mock(CourseEnrollmentRepository.class), sessionRosters,
+                mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+                1_000, 200, 500, MAX_ATTEMPTS, retryBackoffMs, 5_000);
+    }
+
+    private List<Attendance> scans(int count) {
+        Course course = new Course();
+        course.setId(courseId);
+        List<Attendance> scans = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Student student = new Student();
+            student.setId(UUID.randomUUID());
+
+            Attendance attendance = new Attendance();
+            attendance.setId(UUID.randomUUID());
+            attendance.setStudent(student);
+            attendance.setCourse(course);
+            attendance.setDate(DATE);
+            attendance.setSection("A");
+            attendance.setStatus(Attendance.AttendanceStatus.PRESENT);
+            attendance.setMarkedBy(Attendance.AttendanceMethod.QR);
+            attendance.setMarkedAt(LocalDateTime.now());
+            scans.add(attendance);
+        }
+        return scans;
+    }
+
+    private static int[] filled(int rows) {
+        int[] counts = new int[rows];
+        Arrays.fill(counts, 1);
+        return counts;
+    }
+}
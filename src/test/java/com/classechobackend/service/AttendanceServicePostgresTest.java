@@ -0,0 +1,481 @@
+package com.classechobackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import com.classechobackend.dto.AttendanceDTO;
+import com.classechobackend.dto.CourseEnrollmentDTO;
+import com.classechobackend.model.Attendance;
+import com.classechobackend.model.AttendanceSession;
+import com.classechobackend.model.Course;
+import com.classechobackend.model.CourseEnrollment;
+import com.classechobackend.model.Student;
+import com.classechobackend.model.Teacher;
+import com.classechobackend.model.User;
+import com.classechobackend.repository.AttendanceRepository;
+import com.classechobackend.repository.AttendanceSessionRepository;
+import com.classechobackend.repository.CourseEnrollmentRepository;
+import com.classechobackend.repository.CourseRepository;
+import com.classechobackend.repository.StudentRepository;
+import com.classechobackend.repository.TeacherRepository;
+import com.classechobackend.repository.UserRepository;
+
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Attendance behaviour that relies on PostgreSQL itself (partial unique indexes, ON CONFLICT upserts),
+ * against a throwaway database with the Hibernate schema plus schema.sql.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@SpringBootTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        // schema.sql adds indexes to the tables Hibernate creates, so it has to run after them
+        "spring.jpa.defer-datasource-initialization=true",
+        "jwt.secret=integration-test-secret-integration-test-secret",
+        "jwt.token-expiration=3600000",
+        "supabase.service-role-key=integration-test"
+})
+class AttendanceServicePostgresTest {
+
+    private static final int PARALLEL_GENERATIONS = 50;
+    private static final int BURST_SCANS = 500;
+    private static final int REGISTER_SIZE = 300;
+    private static final int READ_ROUNDS = 50;
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private AttendanceService attendanceService;
+
+    @Autowired
+    private ActiveSessionRegistry activeSessionRegistry;
+
+    @Autowired
+    private AttendanceSessionRepository sessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private CourseRepository courseRepository;
+
+    @Autowired
+    private StudentRepository studentRepository;
+
+    @Autowired
+    private AttendanceRepository attendanceRepository;
+
+    @Autowired
+    private CourseEnrollmentRepository enrollmentRepository;
+
+    @Autowired
+    private AttendanceIngestionService ingestionService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void parallelQrGenerationLeavesExactlyOneActiveSession() throws Exception {
+        Teacher teacher = newTeacher();
+        Course course = newCourse(teacher);
+        LocalDate date = LocalDate.now();
+
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_GENERATIONS);
+        List<Future<AttendanceSession>> results = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < PARALLEL_GENERATIONS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return attendanceService.generateQRCode(course.getId(), teacher.getId(), "A", date);
+                }));
+            }
+            start.countDown();
+
+            // Every request gets a session back: its own, or the one that won the race
+            for (Future<AttendanceSession> result : results) {
+                assertThat(result.get(60, TimeUnit.SECONDS)).isNotNull();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<AttendanceSession> active = sessionRepository.findByCourseIdAndDateAndSectionAndIsActiveTrue(course.getId(), date, "A");
+        assertThat(active).hasSize(1);
+        // Swaps that lost and rolled back must not have evicted the surviving session from the registry
+        assertThat(activeSessionRegistry.findById(active.get(0).getId())).isPresent();
+
+        // A later generation still replaces it
+        AttendanceSession next = attendanceService.generateQRCode(course.getId(), teacher.getId(), "A", date);
+        active = sessionRepository.findByCourseIdAndDateAndSectionAndIsActiveTrue(course.getId(), date, "A");
+        assertThat(active).extracting(AttendanceSession::getId).containsExactly(next.getId());
+        assertThat(activeSessionRegistry.findById(next.getId())).isPresent();
+    }
+
+    // A lecture scanning at once: counts the statements each path prepares, the latencies are printed for information
+    @Test
+    void burstOfScansIsAnsweredFromMemory() throws Exception {
+        Teacher teacher = newTeacher();
+        Course course = newCourse(teacher);
+        LocalDate date = LocalDate.now();
+        List<Student> students = enroll(course, BURST_SCANS);
+        AttendanceSession session = attendanceService.generateQRCode(course.getId(), teacher.getId(), "A", date);
+        Statistics statistics = statistics();
+
+        // Before: session by QR code, its course, then the duplicate check, per scan
+        long statementsBefore = statistics.getPrepareStatementCount();
+        long[] databaseNanos = burst(students, student -> {
+            sessionRepository.findByQrCodeAndIsActiveTrue(session.getQrCode()).orElseThrow();
+            courseRepository.findById(course.getId()).orElseThrow();
+            attendanceRepository.findByStudentIdAndCourseIdAndDateAndSection(student.getId(), course.getId(), date, "A");
+        });
+        long databaseStatements = statistics.getPrepareStatementCount() - statementsBefore;
+
+        // After: the scan itself, resolved from the registry and roster and queued for the batched write.
+        // The flusher is paused so its counter refreshes do not land in the count, the queue is written afterwards
+        ingestionService.stop();
+        long[] scanNanos;
+        long scanStatements;
+        try {
+            statementsBefore = statistics.getPrepareStatementCount();
+            scanNanos = burst(students, student -> attendanceService.markAttendanceViaQR(student.getId(), session.getQrCode()));
+            scanStatements = statistics.getPrepareStatementCount() - statementsBefore;
+        } finally {
+            ingestionService.start();
+        }
+        ingestionService.flushNow();
+
+        System.out.printf("%d concurrent scans: database lookups %d statements, p99 %.1f ms; registry %d statements, p99 %.1f ms%n",
+                BURST_SCANS, databaseStatements, p99(databaseNanos) / 1e6, scanStatements, p99(scanNanos) / 1e6);
+
+        assertThat(attendanceRepository.findPresentStudentIds(course.getId(), date, "A")).hasSize(BURST_SCANS);
+        // The old path reads the session and the previous mark on every scan
+        assertThat(databaseStatements).isGreaterThanOrEqualTo(2L * BURST_SCANS);
+        // The scans load the roster once (enrollments and present students); the scheduled expiry sweep may add one
+        assertThat(scanStatements).isLessThanOrEqualTo(3);
+    }
+
+    // The DTO projection materialises no entities where the old path loaded and mapped the whole register;
+    // allocation and latency over a seeded class are printed for information
+    @Test
+    void attendanceDtosAreSelectedDirectlyWithoutLoadingEntities() {
+        Course course = newCourse(newTeacher());
+        LocalDate date = LocalDate.now();
+        List<Student> students = enroll(course, REGISTER_SIZE);
+        List<Attendance> rows = new ArrayList<>();
+        for (Student student : students) {
+            rows.add(scan(student, course, date));
+        }
+        attendanceRepository.batchUpsertScans(rows);
+
+        // The old endpoint path: a read-write transaction over managed entities, mapped afterwards
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+        Supplier<List<AttendanceDTO>> mappedEntities = () -> readWrite.execute(status ->
+                attendanceService.getCourseAttendanceByDate(course.getId(), date, "A").stream()
+                        .map(AttendanceDTO::fromEntity)
+                        .collect(Collectors.toList()));
+        Supplier<List<AttendanceDTO>> projected = () -> attendanceService.getCourseAttendanceDtosByDate(course.getId(), date, "A");
+        // Only attendance rows are counted, a scheduled session sweep in between loads sessions, not these
+        EntityStatistics attendanceLoads = statistics().getEntityStatistics(Attendance.class.getName());
+
+        long loadsBefore = attendanceLoads.getLoadCount();
+        List<AttendanceDTO> expected = mappedEntities.get();
+        long entityLoads = attendanceLoads.getLoadCount() - loadsBefore;
+
+        loadsBefore = attendanceLoads.getLoadCount();
+        List<AttendanceDTO> actual = projected.get();
+        long projectionLoads = attendanceLoads.getLoadCount() - loadsBefore;
+
+        assertThat(expected).hasSize(REGISTER_SIZE);
+        assertThat(actual).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(entityLoads).isGreaterThanOrEqualTo(REGISTER_SIZE);
+        assertThat(projectionLoads).isZero();
+
+        long[] entityCost = measure(mappedEntities);
+        long[] projectionCost = measure(projected);
+        System.out.printf("%d-row register x%d: entities %,d bytes / %.1f ms, projection %,d bytes / %.1f ms%n",
+                REGISTER_SIZE, READ_ROUNDS, entityCost[0], entityCost[1] / 1e6, projectionCost[0], projectionCost[1] / 1e6);
+    }
+
+    @Test
+    void enrollmentDtosTolerateMissingCounters() {
+        Course course = newCourse(newTeacher());
+        Student student = enroll(course, 1).get(0);
+        UUID enrollmentId = enrollmentRepository.findDtosByStudentId(student.getId()).get(0).getId();
+        CourseEnrollment enrollment = enrollmentRepository.findById(enrollmentId).orElseThrow();
+        enrollment.setAttendedClasses(null);
+        enrollment.setTotalClasses(4);
+        enrollmentRepository.save(enrollment);
+
+        List<CourseEnrollmentDTO> dtos = enrollmentRepository.findDtosByStudentId(student.getId());
+
+        assertThat(dtos).hasSize(1);
+        assertThat(dtos.get(0).getCourse().getId()).isEqualTo(course.getId());
+        assertThat(dtos.get(0).getStudent().getRollNo()).isEqualTo(student.getRollNo());
+        assertThat(dtos.get(0).getAttendancePercentage()).isZero();
+    }
+
+    @Test
+    void signedTokenOfAClosedSessionNoLongerValidates() {
+        Teacher teacher = newTeacher();
+        Course course = newCourse(teacher);
+        AttendanceSession session = attendanceService.generateQRCode(course.getId(), teacher.getId(), "A", LocalDate.now());
+        String token = attendanceService.getCurrentQrToken(session.getId(), teacher.getId()).getToken();
+        assertThat(attendanceService.validateQRCode(token)).isTrue();
+
+        attendanceService.closeAttendanceSession(session.getId());
+        assertThat(attendanceService.validateQRCode(token)).isFalse();
+
+        // An instance that never saw the close has neither the entry nor the tombstone, the database answers
+        activeSessionRegistry.reopen(session.getId());
+        assertThat(activeSessionRegistry.findById(session.getId())).isEmpty();
+        assertThat(attendanceService.validateQRCode(token)).isFalse();
+    }
+
+    @Test
+    void scanReplacesAnAutomaticAbsenceInPlace() {
+        Course course = newCourse(newTeacher());
+        Student student = newStudent();
+        LocalDate date = LocalDate.now();
+        Attendance absence = saveAutomaticAbsence(student, course, date);
+
+        Attendance scan = scan(student, course, date);
+        assertThat(attendanceRepository.batchUpsertScans(List.of(scan))).containsExactly(1);
+
+        // Same row and primary key, now a QR presence
+        Attendance stored = stored(student, course, date);
+        assertThat(stored.getId()).isEqualTo(absence.getId());
+        assertThat(stored.getStatus()).isEqualTo(Attendance.AttendanceStatus.PRESENT);
+        assertThat(stored.getMarkedBy()).isEqualTo(Attendance.AttendanceMethod.QR);
+
+        // A second scan is a duplicate and leaves the row alone
+        assertThat(attendanceRepository.batchUpsertScans(List.of(scan(student, course, date)))).containsExactly(0);
+        assertThat(stored(student, course, date).getId()).isEqualTo(absence.getId());
+    }
+
+    @Test
+    void bulkManualMarkConfirmingAnAutomaticAbsenceIsNotOverwrittenByALateScan() {
+        Course course = newCourse(newTeacher());
+        Student student = newStudent();
+        LocalDate date = LocalDate.now();
+        saveAutomaticAbsence(student, course, date);
+
+        // Same status, still written: marked_by becomes MANUAL
+        Map<UUID, Attendance.AttendanceStatus> absent = Map.of(student.getId(), Attendance.AttendanceStatus.ABSENT);
+        assertThat(attendanceRepository.upsertManualStatuses(course.getId(), date, "A", absent)).isEqualTo(1);
+        assertThat(stored(student, course, date).getMarkedBy()).isEqualTo(Attendance.AttendanceMethod.MANUAL);
+        // Repeating it changes nothing
+        assertThat(attendanceRepository.upsertManualStatuses(course.getId(), date, "A", absent)).isZero();
+
+        assertThat(attendanceRepository.batchUpsertScans(List.of(scan(student, course, date)))).containsExactly(0);
+        Attendance stored = stored(student, course, date);
+        assertThat(stored.getStatus()).isEqualTo(Attendance.AttendanceStatus.ABSENT);
+        assertThat(stored.getMarkedBy()).isEqualTo(Attendance.AttendanceMethod.MANUAL);
+    }
+
+    @Test
+    void singleManualMarkConfirmingAnAutomaticAbsenceIsNotOverwrittenByALateScan() {
+        Course course = newCourse(newTeacher());
+        Student student = newStudent();
+        LocalDate date = LocalDate.now();
+        saveAutomaticAbsence(student, course, date);
+
+        attendanceService.markAttendanceManually(student.getId(), course.getId(), date, "A", Attendance.AttendanceStatus.ABSENT);
+        assertThat(stored(student, course, date).getMarkedBy()).isEqualTo(Attendance.AttendanceMethod.MANUAL);
+
+        assertThat(attendanceRepository.batchUpsertScans(List.of(scan(student, course, date)))).containsExactly(0);
+        Attendance stored = stored(student, course, date);
+        assertThat(stored.getStatus()).isEqualTo(Attendance.AttendanceStatus.ABSENT);
+        assertThat(stored.getMarkedBy()).isEqualTo(Attendance.AttendanceMethod.MANUAL);
+    }
+
+    private interface ScanStep {
+        void run(Student student) throws Exception;
+    }
+
+    // Run the step for every student at once, returning each call's latency
+    private static long[] burst(List<Student> students, ScanStep step) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(students.size());
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        try {
+            for (Student student : students) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    long started = System.nanoTime();
+                    step.run(student);
+                    return System.nanoTime() - started;
+                }));
+            }
+            start.countDown();
+
+            long[] nanos = new long[results.size()];
+            for (int i = 0; i < nanos.length; i++) {
+                nanos[i] = results.get(i).get(60, TimeUnit.SECONDS);
+            }
+            return nanos;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Bytes allocated by and wall time of READ_ROUNDS calls on this thread, after a warm-up
+    private static long[] measure(Supplier<?> read) {
+        for (int i = 0; i < 10; i++) {
+            read.get();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long started = System.nanoTime();
+        for (int i = 0; i < READ_ROUNDS; i++) {
+            read.get();
+        }
+        return new long[] {threads.getCurrentThreadAllocatedBytes() - allocatedBefore, System.nanoTime() - started};
+    }
+
+    // Hibernate counts every statement it prepares while hibernate.generate_statistics is on; JdbcTemplate writes are not included
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private static long p99(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+    }
+
+    private List<Student> enroll(Course course, int count) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setEmail("student-" + UUID.randomUUID() + "@example.com");
+            user.setName("Student " + i);
+            user.setRole("student");
+            users.add(user);
+        }
+        users = userRepository.saveAll(users);
+
+        List<Student> students = new ArrayList<>();
+        for (User user : users) {
+            Student student = new Student();
+            student.setUser(user);
+            student.setRollNo("R-" + UUID.randomUUID());
+            students.add(student);
+        }
+        students = studentRepository.saveAll(students);
+
+        List<CourseEnrollment> enrollments = new ArrayList<>();
+        for (Student student : students) {
+            CourseEnrollment enrollment = new CourseEnrollment();
+            enrollment.setStudent(student);
+            enrollment.setCourse(course);
+            enrollment.setSection("A");
+            enrollments.add(enrollment);
+        }
+        enrollmentRepository.saveAll(enrollments);
+        return students;
+    }
+
+    private Attendance saveAutomaticAbsence(Student student, Course course, LocalDate date) {
+        Attendance absence = new Attendance();
+        absence.setStudent(student);
+        absence.setCourse(course);
+        absence.setDate(date);
+        absence.setSection("A");
+        absence.setStatus(Attendance.AttendanceStatus.ABSENT);
+        absence.setMarkedBy(Attendance.AttendanceMethod.AUTO);
+        return attendanceRepository.save(absence);
+    }
+
+    // A row shaped like the ones the ingestion pipeline writes
+    private Attendance scan(Student student, Course course, LocalDate date) {
+        Attendance scan = new Attendance();
+        scan.setId(UUID.randomUUID());
+        scan.setStudent(student);
+        scan.setCourse(course);
+        scan.setDate(date);
+        scan.setSection("A");
+        scan.setStatus(Attendance.AttendanceStatus.PRESENT);
+        scan.setMarkedBy(Attendance.AttendanceMethod.QR);
+        scan.setQrCode(QrTokenService.PREFIX + "test");
+        scan.setMarkedAt(LocalDateTime.now());
+        return scan;
+    }
+
+    private Attendance stored(Student student, Course course, LocalDate date) {
+        return attendanceRepository.findByStudentIdAndCourseIdAndDateAndSection(student.getId(), course.getId(), date, "A")
+                .orElseThrow();
+    }
+
+    private Student newStudent() {
+        User user = new User();
+        user.setEmail("student-" + UUID.randomUUID() + "@example.com");
+        user.setName("Test Student");
+        user.setRole("student");
+        user = userRepository.save(user);
+
+        Student student = new Student();
+        student.setUser(user);
+        student.setRollNo("R-" + UUID.randomUUID());
+        return studentRepository.save(student);
+    }
+
+    private Teacher newTeacher() {
+        User user = new User();
+        user.setEmail("teacher-" + UUID.randomUUID() + "@example.com");
+        user.setName("Test Teacher");
+        user.setRole("teacher");
+        user = userRepository.save(user);
+
+        Teacher teacher = new Teacher();
+        teacher.setUser(user);
+        teacher.setDepartment("CS");
+        return teacherRepository.save(teacher);
+    }
+
+    private Course newCourse(Teacher teacher) {
+        Course course = new Course();
+        course.setCode(UUID.randomUUID().toString().substring(0, 8));
+        course.setName("Integration Testing");
+        course.setCredits(3);
+        course.setTeacher(teacher);
+        return courseRepository.save(course);
+    }
+}
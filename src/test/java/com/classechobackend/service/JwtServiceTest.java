@@ -0,0 +1,186 @@
+package com.classechobackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKey;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * Single-parse verification of access and refresh tokens; the per-request auth cost is printed for comparison.
+ */
+class JwtServiceTest {
+
+    private static final String SECRET = "jwt-service-test-secret-jwt-service-test-secret";
+    private static final long EXPIRATION_MS = 3_600_000;
+
+    private JwtService jwtService;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = jwtService(SECRET, EXPIRATION_MS);
+    }
+
+    @Test
+    void accessTokenIsVerifiedIntoAPrincipal() {
+        UUID studentId = UUID.randomUUID();
+        String token = jwtService.generateAccessToken("user-1", "ann@example.com", "student", studentId, null);
+
+        JwtPrincipal principal = jwtService.parseToken(token);
+
+        assertThat(principal.getUserId()).isEqualTo("user-1");
+        assertThat(principal.getEmail()).isEqualTo("ann@example.com");
+        assertThat(principal.getRole()).isEqualTo("student");
+        assertThat(principal.getStudentId()).isEqualTo(studentId.toString());
+        assertThat(principal.getTeacherId()).isNull();
+        assertThat(principal.hasProfileId()).isTrue();
+        assertThat(principal.isAccessToken()).isTrue();
+        assertThat(principal.isRefreshToken()).isFalse();
+        assertThat(principal.isExpired()).isFalse();
+        assertThat(principal.getExpiresAt()).isBetween(Instant.now().plusMillis(EXPIRATION_MS - 60_000),
+                Instant.now().plusMillis(EXPIRATION_MS + 1_000));
+    }
+
+    @Test
+    void refreshTokenIsNotAnAccessToken() {
+        String token = jwtService.generateRefreshToken("user-1", "ann@example.com");
+
+        JwtPrincipal principal = jwtService.verify(token).orElseThrow();
+
+        assertThat(principal.isRefreshToken()).isTrue();
+        assertThat(principal.isAccessToken()).isFalse();
+        assertThat(principal.getUserId()).isEqualTo("user-1");
+        assertThat(principal.getRole()).isNull();
+    }
+
+    @Test
+    void accessTokenIssuedWithoutATypeClaimIsStillAnAccessToken() {
+        // Shape of the access tokens issued before the type claim was added
+        String token = Jwts.builder()
+                .claim("userId", "user-1")
+                .claim("email", "ann@example.com")
+                .claim("role", "student")
+                .subject("user-1")
+                .expiration(Date.from(Instant.now().plusMillis(EXPIRATION_MS)))
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+
+        JwtPrincipal principal = jwtService.verify(token).orElseThrow();
+
+        assertThat(principal.getType()).isNull();
+        assertThat(principal.isAccessToken()).isTrue();
+        assertThat(principal.isRefreshToken()).isFalse();
+    }
+
+    @Test
+    void forgedTamperedOrExpiredTokensAreRejected() {
+        String token = jwtService.generateAccessToken("user-1", "ann@example.com", "student");
+
+        String otherSecret = jwtService("another-secret-another-secret-another-secret", EXPIRATION_MS)
+                .generateAccessToken("user-1", "ann@example.com", "admin");
+        assertThat(jwtService.verify(otherSecret)).isEmpty();
+
+        int payloadStart = token.indexOf('.') + 1;
+        String tampered = token.substring(0, payloadStart)
+                + (token.charAt(payloadStart) == 'e' ? 'f' : 'e')
+                + token.substring(payloadStart + 1);
+        assertThat(jwtService.verify(tampered)).isEmpty();
+
+        String expired = jwtService(SECRET, -1_000).generateAccessToken("user-1", "ann@example.com", "student");
+        assertThat(jwtService.verify(expired)).isEmpty();
+        assertThatThrownBy(() -> jwtService.parseToken(expired)).isInstanceOf(JwtException.class);
+
+        assertThat(jwtService.verify("not.a.jwt")).isEmpty();
+        assertThat(jwtService.verify("")).isEmpty();
+    }
+
+    // The old filter derived the key and verified the token five times per request; the costs are printed for information
+    @Test
+    void requestIsAuthenticatedWithASingleVerification() {
+        UUID studentId = UUID.randomUUID();
+        String token = jwtService.generateAccessToken("user-1", "ann@example.com", "student", studentId, null);
+        int iterations = 20_000;
+
+        for (int i = 0; i < iterations; i++) {
+            parseFiveTimes(token);
+            jwtService.parseToken(token);
+        }
+
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            parseFiveTimes(token);
+        }
+        long beforeNanos = (System.nanoTime() - started) / iterations;
+
+        started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            jwtService.parseToken(token);
+        }
+        long afterNanos = (System.nanoTime() - started) / iterations;
+
+        System.out.printf("JWT auth per request: five parses %.1f us, one parse %.1f us%n", beforeNanos / 1e3, afterNanos / 1e3);
+
+        AtomicInteger verifications = countVerifications(jwtService);
+        JwtPrincipal principal = jwtService.parseToken(token);
+
+        // Everything the five parses extracted comes out of one
+        assertThat(verifications.get()).isEqualTo(1);
+        assertThat(principal.getUserId()).isEqualTo("user-1");
+        assertThat(principal.getEmail()).isEqualTo("ann@example.com");
+        assertThat(principal.getRole()).isEqualTo("student");
+        assertThat(principal.getStudentId()).isEqualTo(studentId.toString());
+        assertThat(principal.isExpired()).isFalse();
+    }
+
+    // validateToken (twice, via isTokenExpired) then extractUserId, extractEmail and extractRole, each with a fresh key
+    private static void parseFiveTimes(String token) {
+        for (int i = 0; i < 5; i++) {
+            SecretKey key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+            Jwts.parser().verifyWith(key).build().parseSignedClaims(token).getPayload();
+        }
+    }
+
+    // Route the service's parser through a proxy that counts the tokens it parses
+    private static AtomicInteger countVerifications(JwtService service) {
+        JwtParser parser = (JwtParser) ReflectionTestUtils.getField(service, "jwtParser");
+        AtomicInteger verifications = new AtomicInteger();
+        InvocationHandler counting = (proxy, method, args) -> {
+            if (method.getName().startsWith("parse")) {
+                verifications.incrementAndGet();
+            }
+            try {
+                return method.invoke(parser, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        };
+        ReflectionTestUtils.setField(service, "jwtParser",
+                Proxy.newProxyInstance(JwtParser.class.getClassLoader(), new Class<?>[] {JwtParser.class}, counting));
+        return verifications;
+    }
+
+    private static JwtService jwtService(String secret, long expirationMs) {
+        JwtService service = new JwtService();
+        ReflectionTestUtils.setField(service, "secret", secret);
+        ReflectionTestUtils.setField(service, "tokenExpiration", expirationMs);
+        service.init();
+        return service;
+    }
+}
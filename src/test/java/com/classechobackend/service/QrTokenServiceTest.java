@@ -0,0 +1,209 @@
+package com.classechobackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Signature, freshness and layout checks of the rotating QR tokens, plus a rough validation throughput benchmark.
+ */
+class QrTokenServiceTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret";
+    private static final long STEP_SECONDS = 30;
+    private static final long ALLOWED_SKEW_STEPS = 1;
+    private static final Instant NOW = Instant.parse("2026-03-02T09:00:10Z");
+
+    private static final UUID SESSION_ID = UUID.randomUUID();
+    private static final UUID COURSE_ID = UUID.randomUUID();
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 2);
+
+    private final QrTokenService tokens = at(NOW);
+
+    @Test
+    void issuedTokenVerifiesWithItsClaims() {
+        String token = tokens.issue(SESSION_ID, COURSE_ID, DATE, "A");
+
+        assertThat(QrTokenService.isToken(token)).isTrue();
+        QrTokenService.QrClaims claims = tokens.verify(token).orElseThrow();
+        assertThat(claims.getSessionId()).isEqualTo(SESSION_ID);
+        assertThat(claims.getCourseId()).isEqualTo(COURSE_ID);
+        assertThat(claims.getDate()).isEqualTo(DATE);
+        assertThat(claims.getSection()).isEqualTo("A");
+    }
+
+    @Test
+    void sectionRoundTripsIncludingNullAndMultiByte() {
+        assertThat(tokens.verify(tokens.issue(SESSION_ID, COURSE_ID, DATE, null)).orElseThrow().getSection()).isNull();
+        assertThat(tokens.verify(tokens.issue(SESSION_ID, COURSE_ID, DATE, "\u00dc-\u03b2 2")).orElseThrow().getSection()).isEqualTo("\u00dc-\u03b2 2");
+        String longest = "S".repeat(255);
+        assertThat(tokens.verify(tokens.issue(SESSION_ID, COURSE_ID, DATE, longest)).orElseThrow().getSection()).isEqualTo(longest);
+
+        assertThatThrownBy(() -> tokens.issue(SESSION_ID, COURSE_ID, DATE, "S".repeat(256)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void everyFlippedByteIsRejected() {
+        byte[] bytes = decode(tokens.issue(SESSION_ID, COURSE_ID, DATE, "A"));
+
+        for (int i = 0; i < bytes.length; i++) {
+            byte[] tampered = bytes.clone();
+            tampered[i] ^= 0x01;
+            assertThat(tokens.verify(encode(tampered))).as("byte %d flipped", i).isEmpty();
+        }
+    }
+
+    @Test
+    void truncatedOrExtendedMacIsRejected() {
+        byte[] bytes = decode(tokens.issue(SESSION_ID, COURSE_ID, DATE, "A"));
+
+        for (int cut = 1; cut <= 16; cut++) {
+            byte[] truncated = Arrays.copyOf(bytes, bytes.length - cut);
+            assertThat(tokens.verify(encode(truncated))).as("%d MAC bytes cut", cut).isEmpty();
+        }
+        assertThat(tokens.verify(encode(Arrays.copyOf(bytes, bytes.length + 1)))).isEmpty();
+    }
+
+    @Test
+    void malformedTokensAreRejected() {
+        assertThat(tokens.verify(null)).isEmpty();
+        assertThat(tokens.verify("ATT-" + COURSE_ID + "-1700000000000")).isEmpty();
+        assertThat(tokens.verify(QrTokenService.PREFIX)).isEmpty();
+        assertThat(tokens.verify(QrTokenService.PREFIX + "not base64!")).isEmpty();
+        assertThat(tokens.verify(QrTokenService.PREFIX + "AAAA")).isEmpty();
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretIsRejected() {
+        QrTokenService other = new QrTokenService("another-secret", STEP_SECONDS, ALLOWED_SKEW_STEPS, Clock.fixed(NOW, ZoneOffset.UTC));
+
+        assertThat(tokens.verify(other.issue(SESSION_ID, COURSE_ID, DATE, "A"))).isEmpty();
+    }
+
+    @Test
+    void tokenOfOneSessionCannotBeTurnedIntoAnother() {
+        UUID otherSessionId = UUID.randomUUID();
+        String token = tokens.issue(SESSION_ID, COURSE_ID, DATE, "A");
+        String otherToken = tokens.issue(otherSessionId, COURSE_ID, DATE, "A");
+
+        // Each token only ever yields the session it was issued for
+        assertThat(tokens.verify(token).orElseThrow().getSessionId()).isEqualTo(SESSION_ID).isNotEqualTo(otherSessionId);
+        assertThat(tokens.verify(otherToken).orElseThrow().getSessionId()).isEqualTo(otherSessionId);
+
+        // Rewriting the session id keeps the old MAC, which no longer matches
+        byte[] rewritten = decode(token);
+        putUuid(rewritten, 1, otherSessionId);
+        assertThat(tokens.verify(encode(rewritten))).isEmpty();
+
+        // Nor can the MAC of the other session's token be grafted onto this one's body
+        byte[] grafted = decode(token);
+        byte[] otherBytes = decode(otherToken);
+        System.arraycopy(otherBytes, otherBytes.length - 16, grafted, grafted.length - 16, 16);
+        assertThat(tokens.verify(encode(grafted))).isEmpty();
+    }
+
+    @Test
+    void tokensWithinOneStepOfSkewAreAcceptedAndOlderOrNewerOnesRejected() {
+        String token = tokens.issue(SESSION_ID, COURSE_ID, DATE, "A");
+
+        assertThat(at(NOW).verify(token)).isPresent();
+        assertThat(at(NOW.plusSeconds(STEP_SECONDS)).verify(token)).isPresent();
+        assertThat(at(NOW.minusSeconds(STEP_SECONDS)).verify(token)).isPresent();
+
+        assertThat(at(NOW.plusSeconds(2 * STEP_SECONDS)).verify(token)).isEmpty();
+        assertThat(at(NOW.minusSeconds(2 * STEP_SECONDS)).verify(token)).isEmpty();
+        assertThat(at(NOW.plus(1, ChronoUnit.DAYS)).verify(token)).isEmpty();
+    }
+
+    @Test
+    void nextRotationIsTheStartOfTheNextStep() {
+        long nextStepStart = (NOW.getEpochSecond() / STEP_SECONDS + 1) * STEP_SECONDS;
+
+        assertThat(tokens.nextRotation().atZone(ZoneId.systemDefault()).toEpochSecond()).isEqualTo(nextStepStart);
+    }
+
+    // Rough stand-in for a JMH run: validation is pure CPU, so it should comfortably outpace any scan rate
+    @Test
+    void validationThroughputBenchmark() throws Exception {
+        QrTokenService live = new QrTokenService(SECRET, STEP_SECONDS, ALLOWED_SKEW_STEPS);
+        String token = live.issue(SESSION_ID, COURSE_ID, DATE, "A");
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        int perThread = 50_000;
+
+        // Warm-up so the measurement is of JIT-compiled code
+        for (int i = 0; i < 20_000; i++) {
+            live.verify(token);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            long started = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(() -> {
+                    int valid = 0;
+                    for (int i = 0; i < perThread; i++) {
+                        Optional<QrTokenService.QrClaims> claims = live.verify(token);
+                        if (claims.isPresent()) {
+                            valid++;
+                        }
+                    }
+                    return valid;
+                }));
+            }
+            int valid = 0;
+            for (Future<Integer> result : results) {
+                valid += result.get(60, TimeUnit.SECONDS);
+            }
+            long elapsedNanos = System.nanoTime() - started;
+
+            double opsPerSecond = (double) threads * perThread / (elapsedNanos / 1e9);
+            System.out.printf("QR token validation: %,.0f ops/s on %d threads (%.2f us/op)%n",
+                    opsPerSecond, threads, elapsedNanos / 1e3 / perThread);
+
+            assertThat(valid).isEqualTo(threads * perThread);
+            // Orders of magnitude below what one HMAC-SHA256 costs, so only a regression to DB-bound work trips it
+            assertThat(opsPerSecond).isGreaterThan(10_000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static QrTokenService at(Instant instant) {
+        return new QrTokenService(SECRET, STEP_SECONDS, ALLOWED_SKEW_STEPS, Clock.fixed(instant, ZoneOffset.UTC));
+    }
+
+    private static byte[] decode(String token) {
+        return Base64.getUrlDecoder().decode(token.substring(QrTokenService.PREFIX.length()));
+    }
+
+    private static String encode(byte[] bytes) {
+        return QrTokenService.PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static void putUuid(byte[] bytes, int offset, UUID uuid) {
+        ByteBuffer.wrap(bytes, offset, 16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits());
+    }
+}
@@ -0,0 +1,255 @@
+package com.classechobackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.classechobackend.model.AttendanceSession;
+import com.classechobackend.model.Course;
+import com.classechobackend.model.Teacher;
+import com.classechobackend.repository.AttendanceRepository;
+import com.classechobackend.repository.CourseEnrollmentRepository;
+
+/**
+ * Roster loading, rebuilding and bit handling of the per-session rosters, against mocked repositories.
+ */
+class SessionRosterRegistryTest {
+
+    private static final int STUDENTS = 64;
+    private static final LocalDate DATE = LocalDate.of(2026, 3, 2);
+
+    private final CourseEnrollmentRepository enrollmentRepository = mock(CourseEnrollmentRepository.class);
+    private final AttendanceRepository attendanceRepository = mock(AttendanceRepository.class);
+    private final SessionRosterRegistry rosters = new SessionRosterRegistry(enrollmentRepository, attendanceRepository);
+
+    private final UUID courseId = UUID.randomUUID();
+    private final List<UUID> studentIds = new ArrayList<>();
+    private final List<Object[]> enrolled = new ArrayList<>();
+    private ActiveSessionRegistry.ActiveSession session;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        for (int i = 0; i < STUDENTS; i++) {
+            UUID studentId = UUID.randomUUID();
+            studentIds.add(studentId);
+            enrolled.add(new Object[] {studentId, String.format("R%03d", i)});
+        }
+        // Slow enough that concurrent first scans overlap the load
+        when(enrollmentRepository.findRosterByCourseIdAndSection(courseId, "A")).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return enrolled;
+        });
+        when(attendanceRepository.findPresentStudentIds(courseId, DATE, "A")).thenReturn(List.of());
+
+        session = activeSession(courseId);
+        // One thread per student plus one to rebuild alongside them
+        executor = Executors.newFixedThreadPool(STUDENTS + 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void scansAreCheckedAgainstTheRoster() {
+        SessionRosterRegistry.Roster roster = rosters.forSession(session);
+
+        assertThat(roster.markPresent(studentIds.get(0))).isEqualTo(SessionRosterRegistry.ScanOutcome.MARKED);
+        assertThat(roster.markPresent(studentIds.get(0))).isEqualTo(SessionRosterRegistry.ScanOutcome.ALREADY_MARKED);
+        assertThat(roster.markPresent(UUID.randomUUID())).isEqualTo(SessionRosterRegistry.ScanOutcome.NOT_ENROLLED);
+
+        roster.unmark(studentIds.get(0));
+        assertThat(roster.markPresent(studentIds.get(0))).isEqualTo(SessionRosterRegistry.ScanOutcome.MARKED);
+        assertThat(roster.markPresent(studentIds.get(1))).isEqualTo(SessionRosterRegistry.ScanOutcome.MARKED);
+
+        assertThat(roster.enrolledCount()).isEqualTo(STUDENTS);
+        assertThat(roster.presentCount()).isEqualTo(2);
+        // Absentees in roll number order, present students left out
+        assertThat(roster.absentees()).hasSize(STUDENTS - 2)
+                .extracting(row -> row[0])
+                .containsExactlyElementsOf(studentIds.subList(2, STUDENTS));
+
+        // Outside a transaction the release applies immediately
+        rosters.scanDropped(courseId, DATE, "A", studentIds.get(1));
+        assertThat(roster.presentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void burstOfFirstScansLoadsTheRosterOnce() throws Exception {
+        List<SessionRosterRegistry.ScanOutcome> outcomes = scanConcurrently(studentIds);
+
+        assertThat(outcomes).hasSize(STUDENTS).containsOnly(SessionRosterRegistry.ScanOutcome.MARKED);
+        verify(enrollmentRepository, times(1)).findRosterByCourseIdAndSection(courseId, "A");
+        verify(attendanceRepository, times(1)).findPresentStudentIds(courseId, DATE, "A");
+        assertThat(rosters.forSession(session).presentCount()).isEqualTo(STUDENTS);
+    }
+
+    @Test
+    void rebuildKeepsBitsSetThroughTheReplacedRoster() {
+        SessionRosterRegistry.Roster stale = rosters.forSession(session);
+        stale.markPresent(studentIds.get(0));
+
+        rosters.enrollmentChanged(courseId);
+        SessionRosterRegistry.Roster rebuilt = rosters.forSession(session);
+
+        assertThat(rebuilt).isNotSameAs(stale);
+        verify(enrollmentRepository, times(2)).findRosterByCourseIdAndSection(courseId, "A");
+        assertThat(rebuilt.markPresent(studentIds.get(0))).isEqualTo(SessionRosterRegistry.ScanOutcome.ALREADY_MARKED);
+
+        // A scan still holding the replaced roster lands in the rebuilt one
+        assertThat(stale.markPresent(studentIds.get(1))).isEqualTo(SessionRosterRegistry.ScanOutcome.MARKED);
+        assertThat(rebuilt.markPresent(studentIds.get(1))).isEqualTo(SessionRosterRegistry.ScanOutcome.ALREADY_MARKED);
+        assertThat(stale.presentCount()).isEqualTo(rebuilt.presentCount()).isEqualTo(2);
+
+        // Until enrollment changes again, the rebuilt roster is reused
+        assertThat(rosters.forSession(session)).isSameAs(rebuilt);
+    }
+
+    @Test
+    void scansRacingARebuildAreNeverLost() throws Exception {
+        for (int round = 0; round < 5; round++) {
+            rosters.remove(session.getSessionId());
+            SessionRosterRegistry.Roster stale = rosters.forSession(session);
+
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<SessionRosterRegistry.ScanOutcome>> results = new ArrayList<>();
+            for (UUID studentId : studentIds) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return stale.markPresent(studentId);
+                }));
+            }
+            Future<?> rebuild = executor.submit(() -> {
+                start.await();
+                rosters.enrollmentChanged(courseId);
+                return rosters.forSession(session);
+            });
+            start.countDown();
+
+            for (Future<SessionRosterRegistry.ScanOutcome> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(SessionRosterRegistry.ScanOutcome.MARKED);
+            }
+            rebuild.get(10, TimeUnit.SECONDS);
+            assertThat(rosters.forSession(session).presentCount()).as("round %d", round).isEqualTo(STUDENTS);
+        }
+    }
+
+    @Test
+    void manualMarksReachLoadedRosters() {
+        SessionRosterRegistry.Roster roster = rosters.forSession(session);
+
+        rosters.attendanceMarked(courseId, DATE, "A", Map.of(studentIds.get(0), true, studentIds.get(1), false));
+        rosters.attendanceMarked(courseId, DATE, "B", Map.of(studentIds.get(2), true));
+
+        assertThat(roster.markPresent(studentIds.get(0))).isEqualTo(SessionRosterRegistry.ScanOutcome.ALREADY_MARKED);
+        assertThat(roster.presentCount()).isEqualTo(1);
+    }
+
+    @Test
+    void slowLoadDoesNotHoldUpOtherSessions() throws Exception {
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        when(enrollmentRepository.findRosterByCourseIdAndSection(courseId, "A")).thenAnswer(invocation -> {
+            loadStarted.countDown();
+            releaseLoad.await();
+            return enrolled;
+        });
+        UUID otherCourseId = UUID.randomUUID();
+        when(enrollmentRepository.findRosterByCourseIdAndSection(otherCourseId, "A")).thenReturn(enrolled.subList(0, 1));
+        when(attendanceRepository.findPresentStudentIds(otherCourseId, DATE, "A")).thenReturn(List.of());
+
+        Future<SessionRosterRegistry.Roster> slow = executor.submit(() -> rosters.forSession(session));
+        assertThat(loadStarted.await(10, TimeUnit.SECONDS)).isTrue();
+        try {
+            // Enough sessions that some share a map bin with the one loading
+            for (int i = 0; i < 256; i++) {
+                ActiveSessionRegistry.ActiveSession other = activeSession(otherCourseId);
+                assertThat(executor.submit(() -> rosters.forSession(other).enrolledCount()).get(10, TimeUnit.SECONDS))
+                        .isEqualTo(1);
+            }
+        } finally {
+            releaseLoad.countDown();
+        }
+        assertThat(slow.get(10, TimeUnit.SECONDS).enrolledCount()).isEqualTo(STUDENTS);
+    }
+
+    @Test
+    void failedLoadIsRetriedAndKeepsTheRosterInUse() {
+        when(enrollmentRepository.findRosterByCourseIdAndSection(courseId, "A"))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(enrolled)
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(enrolled);
+
+        assertThatThrownBy(() -> rosters.forSession(session)).hasMessage("database unavailable");
+        SessionRosterRegistry.Roster roster = rosters.forSession(session);
+        roster.markPresent(studentIds.get(0));
+
+        // A failed rebuild leaves the roster in use in place, the next scan rebuilds it
+        rosters.enrollmentChanged(courseId);
+        assertThatThrownBy(() -> rosters.forSession(session)).hasMessage("database unavailable");
+        SessionRosterRegistry.Roster rebuilt = rosters.forSession(session);
+
+        assertThat(rebuilt).isNotSameAs(roster);
+        assertThat(rebuilt.markPresent(studentIds.get(0))).isEqualTo(SessionRosterRegistry.ScanOutcome.ALREADY_MARKED);
+        verify(enrollmentRepository, times(4)).findRosterByCourseIdAndSection(courseId, "A");
+    }
+
+    private List<SessionRosterRegistry.ScanOutcome> scanConcurrently(List<UUID> scanning) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<SessionRosterRegistry.ScanOutcome>> results = new ArrayList<>();
+        for (UUID studentId : scanning) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return rosters.forSession(session).markPresent(studentId);
+            }));
+        }
+        start.countDown();
+
+        List<SessionRosterRegistry.ScanOutcome> outcomes = new ArrayList<>();
+        for (Future<SessionRosterRegistry.ScanOutcome> result : results) {
+            outcomes.add(result.get(10, TimeUnit.SECONDS));
+        }
+        return outcomes;
+    }
+
+    private ActiveSessionRegistry.ActiveSession activeSession(UUID courseId) {
+        Course course = new Course();
+        course.setId(courseId);
+        Teacher teacher = new Teacher();
+        teacher.setId(UUID.randomUUID());
+
+        AttendanceSession attendanceSession = new AttendanceSession();
+        attendanceSession.setId(UUID.randomUUID());
+        attendanceSession.setCourse(course);
+        attendanceSession.setTeacher(teacher);
+        attendanceSession.setQrCode("ATT-" + UUID.randomUUID());
+        attendanceSession.setSection("A");
+        attendanceSession.setDate(DATE);
+        attendanceSession.setExpiresAt(LocalDateTime.now().plusMinutes(5));
+
+        // Outside a transaction register applies immediately and hands back the snapshot
+        return new ActiveSessionRegistry(rosters).register(attendanceSession);
+    }
+}
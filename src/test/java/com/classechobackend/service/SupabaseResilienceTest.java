@@ -0,0 +1,267 @@
+package com.classechobackend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.classechobackend.dto.ApiError;
+import com.classechobackend.exception.BadRequestException;
+import com.classechobackend.exception.GlobalExceptionHandler;
+import com.classechobackend.exception.SupabaseUnavailableException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Fault injection for the Supabase circuit breaker, bulkhead, deadline and retry policy against a stub PostgREST.
+ */
+class SupabaseResilienceTest {
+
+    private static final int MINIMUM_CALLS = 4;
+    private static final long OPEN_STATE_WAIT_MS = 300;
+    private static final int MAX_CONCURRENT_CALLS = 2;
+    private static final int MAX_RETRIES = 2;
+    private static final long RETRY_BASE_MS = 50;
+    private static final long RETRY_CAP_MS = 200;
+    private static final long CALL_TIMEOUT_MS = 1_000;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private SimpleMeterRegistry meterRegistry;
+    private SupabaseService supabaseService;
+
+    // Status to answer the n-th request (0-based) with
+    private volatile IntUnaryOperator statusForRequest = n -> 200;
+    private volatile CountDownLatch hold = new CountDownLatch(0);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final List<String> methods = new CopyOnWriteArrayList<>();
+    private final List<Long> arrivalNanos = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/rest/v1/", this::respond);
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+
+        meterRegistry = new SimpleMeterRegistry();
+        SupabaseResilience resilience = new SupabaseResilience(meterRegistry,
+                50f, 2000, 10, MINIMUM_CALLS, OPEN_STATE_WAIT_MS, MAX_CONCURRENT_CALLS,
+                MAX_RETRIES, RETRY_BASE_MS, RETRY_CAP_MS, CALL_TIMEOUT_MS);
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://127.0.0.1:" + server.getAddress().getPort())
+                .build();
+        supabaseService = new SupabaseService(webClient, resilience);
+    }
+
+    @AfterEach
+    void tearDown() {
+        hold.countDown();
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void getIsRetriedOnTransientErrorsWithBoundedJitteredDelays() {
+        statusForRequest = n -> n < MAX_RETRIES ? 503 : 200;
+
+        assertThat(supabaseService.select("courses", "*").block(Duration.ofSeconds(5))).isNotNull();
+
+        assertThat(requests.get()).isEqualTo(MAX_RETRIES + 1);
+        for (int i = 1; i < arrivalNanos.size(); i++) {
+            long gapMs = TimeUnit.NANOSECONDS.toMillis(arrivalNanos.get(i) - arrivalNanos.get(i - 1));
+            assertThat(gapMs).isBetween(RETRY_BASE_MS - 5, RETRY_CAP_MS + 500);
+        }
+        assertThat(meterRegistry.get("supabase.retries").counter().count()).isEqualTo(MAX_RETRIES);
+    }
+
+    @Test
+    void getGivesUpAfterMaxRetries() {
+        statusForRequest = n -> 503;
+
+        assertThatThrownBy(() -> supabaseService.select("courses", "*").block(Duration.ofSeconds(5)))
+                .isInstanceOf(SupabaseUnavailableException.class);
+        assertThat(requests.get()).isEqualTo(MAX_RETRIES + 1);
+    }
+
+    @Test
+    void writesAreNeverRetried() {
+        statusForRequest = n -> 503;
+
+        assertThatThrownBy(() -> supabaseService.insert("courses", Map.of("code", "CS101")).block(Duration.ofSeconds(5)))
+                .isInstanceOf(SupabaseUnavailableException.class);
+        assertThatThrownBy(() -> supabaseService.update("courses", "id=eq.1", Map.of("code", "CS102")).block(Duration.ofSeconds(5)))
+                .isInstanceOf(SupabaseUnavailableException.class);
+        assertThatThrownBy(() -> supabaseService.delete("courses", "id=eq.1").block(Duration.ofSeconds(5)))
+                .isInstanceOf(SupabaseUnavailableException.class);
+
+        assertThat(methods).containsExactly("POST", "PATCH", "DELETE");
+    }
+
+    @Test
+    void clientErrorsAreNotRetriedAndNeverOpenTheBreaker() {
+        statusForRequest = n -> 400;
+
+        for (int i = 0; i < MINIMUM_CALLS * 2; i++) {
+            assertThatThrownBy(() -> supabaseService.select("courses", "*").block(Duration.ofSeconds(5)))
+                    .isInstanceOf(BadRequestException.class);
+        }
+
+        // Every call reached the stub exactly once
+        assertThat(requests.get()).isEqualTo(MINIMUM_CALLS * 2);
+        assertThat(stateGauge("open")).isZero();
+    }
+
+    @Test
+    void breakerOpensOnFailuresThenHalfOpensAndClosesOnRecovery() throws InterruptedException {
+        statusForRequest = n -> 500;
+        for (int i = 0; i < MINIMUM_CALLS; i++) {
+            assertThatThrownBy(() -> supabaseService.insert("courses", Map.of()).block(Duration.ofSeconds(5)))
+                    .isInstanceOf(SupabaseUnavailableException.class);
+        }
+        assertThat(stateGauge("open")).isEqualTo(1.0);
+        assertThat(transitions("CLOSED", "OPEN")).isEqualTo(1.0);
+
+        // Open: rejected without reaching the stub
+        int reached = requests.get();
+        assertThatThrownBy(() -> supabaseService.insert("courses", Map.of()).block(Duration.ofSeconds(5)))
+                .isInstanceOf(SupabaseUnavailableException.class)
+                .hasMessageContaining("circuit open");
+        assertThat(requests.get()).isEqualTo(reached);
+
+        // Half-open on its own once the wait has passed
+        awaitGauge("half_open", OPEN_STATE_WAIT_MS * 10);
+        assertThat(transitions("OPEN", "HALF_OPEN")).isEqualTo(1.0);
+
+        // Trial calls succeed and close it again
+        statusForRequest = n -> 201;
+        for (int i = 0; i < 3; i++) {
+            supabaseService.insert("courses", Map.of()).block(Duration.ofSeconds(5));
+        }
+        assertThat(stateGauge("closed")).isEqualTo(1.0);
+        assertThat(transitions("HALF_OPEN", "CLOSED")).isEqualTo(1.0);
+    }
+
+    @Test
+    void bulkheadRejectionIsMappedTo503() throws InterruptedException {
+        hold = new CountDownLatch(1);
+        statusForRequest = n -> 201;
+
+        // Fill every bulkhead permit with calls the stub holds open
+        for (int i = 0; i < MAX_CONCURRENT_CALLS; i++) {
+            supabaseService.insert("courses", Map.of()).subscribe(body -> { }, error -> { });
+        }
+        awaitRequests(MAX_CONCURRENT_CALLS);
+
+        Throwable rejected = catchThrowable(() -> supabaseService.insert("courses", Map.of()).block(Duration.ofSeconds(5)));
+        hold.countDown();
+
+        assertThat(rejected).isInstanceOf(SupabaseUnavailableException.class)
+                .hasMessageContaining("too many concurrent calls");
+        assertThat(requests.get()).isEqualTo(MAX_CONCURRENT_CALLS);
+        assertThat(meterRegistry.get("supabase.bulkhead.rejected").counter().count()).isEqualTo(1.0);
+        // Rejections are not failures of Supabase itself
+        assertThat(stateGauge("closed")).isEqualTo(1.0);
+
+        ResponseEntity<ApiError> response = new GlobalExceptionHandler()
+                .handleSupabaseUnavailableException((SupabaseUnavailableException) rejected, new MockHttpServletRequest("POST", "/api/test"));
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void stalledCallIsCutOffAtTheDeadlineAndReleasesItsPermit() {
+        // The stub never answers while held
+        hold = new CountDownLatch(1);
+
+        // Without the deadline block() itself would give up with an IllegalStateException
+        assertThatThrownBy(() -> supabaseService.insert("courses", Map.of()).block(Duration.ofSeconds(5)))
+                .isInstanceOf(SupabaseUnavailableException.class)
+                .hasMessageContaining("timed out");
+
+        // A write is not retried on timeout, its outcome on the server is unknown
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("resilience4j.bulkhead.available.concurrent.calls")
+                .tag("name", "supabaseRest")
+                .gauge()
+                .value()).isEqualTo(MAX_CONCURRENT_CALLS);
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        int n = requests.getAndIncrement();
+        methods.add(exchange.getRequestMethod());
+        arrivalNanos.add(System.nanoTime());
+        try {
+            hold.await(10, TimeUnit.SECONDS);
+            int status = statusForRequest.applyAsInt(n);
+            byte[] body = (status < 400 ? "[]" : "{\"message\":\"stub error\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private double stateGauge(String state) {
+        return meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", "supabaseRest")
+                .tag("state", state)
+                .gauge()
+                .value();
+    }
+
+    private double transitions(String from, String to) {
+        Counter counter = meterRegistry.find("supabase.circuitbreaker.transitions")
+                .tag("name", "supabaseRest")
+                .tag("from", from)
+                .tag("to", to)
+                .counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private void awaitGauge(String state, long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (stateGauge(state) != 1.0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(stateGauge(state)).isEqualTo(1.0);
+    }
+
+    private void awaitRequests(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (requests.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(requests.get()).isEqualTo(expected);
+    }
+}